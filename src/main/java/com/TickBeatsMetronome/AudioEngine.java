@@ -0,0 +1,712 @@
+package com.TickBeatsMetronome;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.sound.sampled.*;
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+/**
+ * AudioEngine keeps a single SourceDataLine open for the lifetime of the plugin and mixes every
+ * tick sound and music beat into it in software.
+ *
+ * Opening a Clip for every tick means a native line is opened and closed every 600ms per voice,
+ * which shows up as CPU spikes and late starts. With the engine the line is opened once on startup,
+ * and playing a sound is just handing a PCM buffer to a free voice that the render thread mixes in.
+ *
+ * All audio played through the engine must already be in {@link #FORMAT}, use {@link #convert} to get it there.
+ *
+ * Sounds can also be scheduled for an exact time with {@link #playAt}. The engine keeps a running estimate of
+ * which output frame is heard at which System.nanoTime(), so a scheduled sound is placed at an exact frame offset
+ * in the stream instead of starting whenever the calling thread happened to wake up.
+ * Sounds known far enough ahead can be queued with {@link #queueAt} to be heard exactly at their time, with no lead,
+ * and pulled back out with {@link #retractQueued} if they turn out to be wrong before they start.
+ *
+ * The number of sounds playing at once is capped by {@link #setMaxPolyphony}, when a new sound would go over the cap
+ * the oldest playing sound is faded out over a few ms to make room, so long or overlapping tick sounds can't pile up.
+ *
+ * Music can also be streamed with {@link #queueMusic}, which appends beats to a {@link MusicStream}
+ * that's mixed in continuously, so beats play back to back without a gap or overlap between them.
+ */
+@Slf4j
+@Singleton
+public class AudioEngine
+{
+    // The one format everything is mixed in, 44.1 kHz 16-bit signed little-endian stereo
+    public static final AudioFormat FORMAT = new AudioFormat(44100f, 16, 2, true, false);
+
+    private static final int CHANNELS = 2;
+    private static final int FRAME_SIZE = 4;
+
+    // How many frames are mixed per block (256 frames is ~6ms)
+    private static final int BLOCK_FRAMES = 256;
+
+    // Size of the output line's buffer in frames (2048 frames is ~46ms)
+    private static final int LINE_BUFFER_FRAMES = 2048;
+
+    // Highest max polyphony that can be set
+    public static final int MAX_POLYPHONY = 32;
+
+    // Extra voices for sounds that are fading out after being stolen, they don't count towards the polyphony
+    private static final int RELEASE_VOICES = 8;
+
+    // Total voices allocated up front
+    private static final int MAX_VOICES = MAX_POLYPHONY + RELEASE_VOICES;
+
+    // How long a stolen voice takes to fade out (220 frames is 5ms)
+    private static final int STEAL_FADE_FRAMES = 220;
+
+    // The music stream holds two beats (a beat is 600ms, 26460 frames)
+    private static final int MUSIC_STREAM_FRAMES = 26460 * 2;
+
+    // Extra headroom on scheduled sounds for threads that wake up late (441 frames is 10ms)
+    private static final int JITTER_MARGIN_FRAMES = 441;
+
+    // How much each new frame position measurement moves the stream clock estimate (1/64 smooths out jitter)
+    private static final int CLOCK_SMOOTHING = 64;
+
+    @Inject
+    private TickTraceRecorder tickTraceRecorder;
+
+    private final Voice[] voices = new Voice[MAX_VOICES];
+
+    // How many voices can play at once before the oldest is stolen
+    private volatile int maxPolyphony = 16;
+
+    private final MusicStream musicStream = new MusicStream(MUSIC_STREAM_FRAMES);
+
+    // Reused every block so the render loop never allocates
+    private final int[] mixBuffer = new int[BLOCK_FRAMES * CHANNELS];
+    private final byte[] outputBuffer = new byte[BLOCK_FRAMES * FRAME_SIZE];
+
+    private SourceDataLine line;
+    private Thread renderThread;
+    private volatile boolean running = false;
+
+    // Frame index of the start of the next block to be mixed
+    private volatile long renderedFrames = 0;
+
+    // Estimated System.nanoTime() at which frame 0 of the stream was heard, frame N is heard N frames later
+    private volatile long clockOriginNanos = 0;
+
+    // Measured frames between a sound being handed to play() and it being heard (written but not yet played)
+    private volatile long outputLatencyFrames = 0;
+
+    // How far past its scheduled time a sound is placed, so the render thread is never already past it
+    private long scheduleLeadFrames = 0;
+
+    public AudioEngine()
+    {
+        for (int i = 0; i < MAX_VOICES; i++)
+        {
+            voices[i] = new Voice();
+        }
+    }
+
+    /**
+     * Opens the output line and starts the render thread.
+     * If the line can't be opened the engine stays stopped and callers should fall back to Clips.
+     */
+    public synchronized void start()
+    {
+        // Don't start twice
+        if (running)
+        {
+            return;
+        }
+
+        try
+        {
+            line = AudioSystem.getSourceDataLine(FORMAT);
+            line.open(FORMAT, LINE_BUFFER_FRAMES * FRAME_SIZE);
+            line.start();
+        }
+        catch (Exception e)
+        {
+            log.debug("Unable to open audio engine output line: {}", e.getMessage());
+            line = null;
+            return;
+        }
+
+        renderedFrames = 0;
+        clockOriginNanos = 0;
+        outputLatencyFrames = 0;
+
+        // The render thread stays a full line buffer plus a block ahead of what's being heard,
+        // a scheduled sound has to land after that plus some room for a late caller
+        scheduleLeadFrames = line.getBufferSize() / FRAME_SIZE + BLOCK_FRAMES + JITTER_MARGIN_FRAMES;
+
+        running = true;
+
+        renderThread = new Thread(this::renderLoop, "Tick Beats Audio");
+        renderThread.setDaemon(true);
+        renderThread.setPriority(Thread.MAX_PRIORITY);
+        renderThread.start();
+
+        log.debug("Audio engine started ({} frame line buffer)", line.getBufferSize() / FRAME_SIZE);
+    }
+
+    /**
+     * Stops the render thread and closes the output line.
+     * Call this in the plugin's shutDown().
+     */
+    public synchronized void stop()
+    {
+        if (!running)
+        {
+            return;
+        }
+
+        running = false;
+
+        try
+        {
+            renderThread.join(1000);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        renderThread = null;
+
+        line.stop();
+        line.flush();
+        line.close();
+        line = null;
+
+        // Drop anything that was still playing
+        synchronized (voices)
+        {
+            for (Voice voice : voices)
+            {
+                voice.data = null;
+            }
+        }
+        musicStream.clear();
+
+        log.debug("Audio engine stopped");
+    }
+
+    /**
+     * @return true if the engine is running and knows which frame is heard when, so {@link #queueAt} can be used
+     */
+    public boolean isClockReady()
+    {
+        return running && clockOriginNanos != 0;
+    }
+
+    /**
+     * @return true if the output line is open and sounds can be played through the engine
+     */
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Sets how many sounds can play at once, when a new sound would go over this the oldest one is faded out.
+     *
+     * @param polyphony Max voices (1 to {@link #MAX_POLYPHONY})
+     */
+    public void setMaxPolyphony(int polyphony)
+    {
+        maxPolyphony = Math.max(1, Math.min(MAX_POLYPHONY, polyphony));
+    }
+
+    /**
+     * Starts playing a sound on the next rendered block.
+     *
+     * @param data   PCM data in {@link #FORMAT}
+     * @param volume Volume to play at (0–150), over 100 for boosted volume
+     * @return false if the engine isn't running or every voice is busy
+     */
+    public boolean play(byte[] data, int volume)
+    {
+        return addVoice(data, 0, volume, renderedFrames);
+    }
+
+    /**
+     * Schedules a sound to start at an exact frame in the output stream.
+     *
+     * The sound is heard a fixed lead after the given time (see {@link #getScheduleLeadNanos()}),
+     * so sounds scheduled for evenly spaced times stay evenly spaced to the sample,
+     * as long as this is called no later than the lead after the given time.
+     *
+     * @param data      PCM data in {@link #FORMAT}
+     * @param volume    Volume to play at (0–150), over 100 for boosted volume
+     * @param timeNanos The System.nanoTime() the sound belongs to, e.g. the predicted tick time
+     * @return false if the engine isn't running or every voice is busy
+     */
+    public boolean playAt(byte[] data, int volume, long timeNanos)
+    {
+        return addVoice(data, 0, volume, scheduledFrame(timeNanos));
+    }
+
+    /**
+     * Queues a sound to be heard at an exact time, for sounds known well ahead (e.g. the next tick's sound).
+     *
+     * Unlike {@link #playAt} there's no lead, the sound starts on the frame that's heard at the given time,
+     * so it has to be queued at least {@link #getScheduleLeadNanos()} ahead or it starts as soon as possible instead.
+     * The queued sound takes up a voice until it's finished playing.
+     *
+     * Adding a voice never waits on Java Sound, so unlike {@link #play} this is fine to call straight from a tick thread,
+     * which keeps queueing and {@link #retractQueued} in order.
+     *
+     * @param data      PCM data in {@link #FORMAT}
+     * @param volume    Volume to play at (0–150), over 100 for boosted volume
+     * @param timeNanos The System.nanoTime() the sound should be heard at
+     * @param sequence  What the sound is for (e.g. the tick's sequence number, above 0), for retracting it
+     * @return false if the engine isn't running, the clock isn't ready yet or every voice is busy
+     */
+    public boolean queueAt(byte[] data, int volume, long timeNanos, long sequence)
+    {
+        long origin = clockOriginNanos;
+        if (!running || origin == 0)
+        {
+            return false;
+        }
+
+        return addVoice(data, 0, volume, Math.max(nanosToFrames(timeNanos - origin), renderedFrames), sequence);
+    }
+
+    /**
+     * Pulls back every sound queued with the given sequence number that hasn't started being mixed yet.
+     * Sounds that have already started carry on.
+     *
+     * @param sequence The sequence number the sounds were queued with
+     * @return How many sounds were pulled back
+     */
+    public int retractQueued(long sequence)
+    {
+        int retracted = 0;
+
+        synchronized (voices)
+        {
+            for (Voice voice : voices)
+            {
+                if (voice.data != null && voice.sequence == sequence && voice.startFrame >= renderedFrames)
+                {
+                    voice.data = null;
+                    retracted++;
+                }
+            }
+        }
+
+        return retracted;
+    }
+
+    /**
+     * Starts playing a sound on the next rendered block, crossfaded with whatever should have carried on
+     * from the sound before it. Used when a music beat is spliced next to a beat it doesn't follow.
+     *
+     * @param data   PCM data in {@link #FORMAT}
+     * @param head   The start of data faded in, played in place of it, or null to play data as is
+     * @param tail   The natural continuation of the previous sound faded out, played over the head, or null for none
+     * @param volume Volume to play at (0–150), over 100 for boosted volume
+     * @return false if the engine isn't running or every voice is busy
+     */
+    public boolean playCrossfaded(byte[] data, byte[] head, byte[] tail, int volume)
+    {
+        return addCrossfadedVoices(data, head, tail, volume, renderedFrames);
+    }
+
+    /**
+     * Schedules a sound to start at an exact frame in the output stream like {@link #playAt},
+     * crossfaded like {@link #playCrossfaded}.
+     *
+     * @param data      PCM data in {@link #FORMAT}
+     * @param head      The start of data faded in, played in place of it, or null to play data as is
+     * @param tail      The natural continuation of the previous sound faded out, played over the head, or null for none
+     * @param volume    Volume to play at (0–150), over 100 for boosted volume
+     * @param timeNanos The System.nanoTime() the sound belongs to, e.g. the predicted tick time
+     * @return false if the engine isn't running or every voice is busy
+     */
+    public boolean playCrossfadedAt(byte[] data, byte[] head, byte[] tail, int volume, long timeNanos)
+    {
+        return addCrossfadedVoices(data, head, tail, volume, scheduledFrame(timeNanos));
+    }
+
+    /**
+     * Works out which stream frame a sound scheduled for the given time starts on.
+     */
+    private long scheduledFrame(long timeNanos)
+    {
+        long origin = clockOriginNanos;
+
+        // Until the first frame position measurement comes in there's no clock to schedule against
+        if (origin == 0)
+        {
+            return renderedFrames;
+        }
+
+        long startFrame = nanosToFrames(timeNanos - origin) + scheduleLeadFrames;
+
+        // If the caller was later than the lead allows, play as soon as possible instead
+        return Math.max(startFrame, renderedFrames);
+    }
+
+    /**
+     * @return How long after its scheduled time a sound from {@link #playAt} is heard
+     */
+    public long getScheduleLeadNanos()
+    {
+        return framesToNanos(scheduleLeadFrames);
+    }
+
+    /**
+     * The measured output latency, how long after {@link #play} is called the sound is heard.
+     * This is the audio written to the line that it hasn't played yet, any delay the OS or sound card adds
+     * after the line reports a frame as played can't be seen from Java.
+     *
+     * @return the latency, or 0 if the engine isn't running or hasn't measured it yet
+     */
+    public long getOutputLatencyNanos()
+    {
+        return running ? framesToNanos(outputLatencyFrames) : 0;
+    }
+
+    /**
+     * Appends a music beat to the end of the music stream, it starts as soon as the beat before it finishes.
+     * When a beat is spliced next to a beat it doesn't follow, pass a head and tail to crossfade the two.
+     *
+     * @param data   PCM data in {@link #FORMAT}
+     * @param head   The start of data faded in, played in place of it, or null to play data as is
+     * @param tail   The natural continuation of the previous beat faded out, played over the head, or null for none
+     * @param volume Volume to play at (0–150), over 100 for boosted volume
+     * @return false if the engine isn't running
+     */
+    public boolean queueMusic(byte[] data, byte[] head, byte[] tail, int volume)
+    {
+        if (!running || data == null)
+        {
+            return false;
+        }
+
+        musicStream.queue(data, head, tail, volume);
+        return true;
+    }
+
+    /**
+     * Fades out whatever music is queued in the music stream, for when music is stopped or the track changes.
+     */
+    public void stopMusic()
+    {
+        musicStream.fadeOut();
+    }
+
+    /**
+     * Plays the tail and the faded in head together, then the rest of the data straight after the head,
+     * so the crossfade lines up to the frame.
+     */
+    private boolean addCrossfadedVoices(byte[] data, byte[] head, byte[] tail, int volume, long startFrame)
+    {
+        if (head == null || head.length >= data.length)
+        {
+            return addVoice(data, 0, volume, startFrame);
+        }
+
+        if (tail != null)
+        {
+            addVoice(tail, 0, volume, startFrame);
+        }
+        addVoice(head, 0, volume, startFrame);
+
+        return addVoice(data, head.length, volume, startFrame + head.length / FRAME_SIZE);
+    }
+
+    /**
+     * Hands a sound to a free voice.
+     * If max polyphony is reached the oldest voice is faded out to make room,
+     * and if every voice (fading ones included) is taken the fading voice closest to silent is cut off.
+     *
+     * @param position   Byte offset in the data to start playing from
+     * @param startFrame The stream frame the sound starts on
+     * @return false if the engine isn't running
+     */
+    private boolean addVoice(byte[] data, int position, int volume, long startFrame)
+    {
+        return addVoice(data, position, volume, startFrame, 0);
+    }
+
+    private boolean addVoice(byte[] data, int position, int volume, long startFrame, long sequence)
+    {
+        if (!running || data == null)
+        {
+            return false;
+        }
+
+        synchronized (voices)
+        {
+            Voice free = null;
+            Voice oldest = null;
+            Voice quietest = null;
+            int activeVoices = 0;
+
+            for (Voice voice : voices)
+            {
+                if (voice.data == null)
+                {
+                    if (free == null)
+                    {
+                        free = voice;
+                    }
+                }
+                else if (voice.releaseFrames > 0)
+                {
+                    if (quietest == null || voice.releaseFrames < quietest.releaseFrames)
+                    {
+                        quietest = voice;
+                    }
+                }
+                else
+                {
+                    activeVoices++;
+                    if (oldest == null || voice.startFrame < oldest.startFrame)
+                    {
+                        oldest = voice;
+                    }
+                }
+            }
+
+            // Steal the oldest voice, it fades out instead of cutting off so it doesn't click.
+            // If it hasn't started playing yet there's nothing to fade, so it's just dropped
+            if (activeVoices >= maxPolyphony && oldest != null)
+            {
+                if (oldest.startFrame >= renderedFrames)
+                {
+                    oldest.data = null;
+                    free = oldest;
+                }
+                else
+                {
+                    oldest.releaseFrames = STEAL_FADE_FRAMES;
+                }
+            }
+
+            // Every slot is taken, cut off the fading voice that's closest to done
+            if (free == null)
+            {
+                free = quietest != null ? quietest : oldest;
+            }
+
+            free.data = data;
+            free.position = position;
+            free.startFrame = startFrame;
+            free.gain = Math.max(0, volume) / 100f;
+            free.releaseFrames = 0;
+            free.sequence = sequence;
+        }
+
+        return true;
+    }
+
+    /**
+     * Mixes and writes blocks until the engine is stopped.
+     * line.write() blocks once the line buffer is full, which is what paces this loop.
+     */
+    private void renderLoop()
+    {
+        while (running)
+        {
+            renderBlock();
+            line.write(outputBuffer, 0, outputBuffer.length);
+            updateClock();
+        }
+    }
+
+    /**
+     * Measures which frame is being heard right now and nudges the stream clock and output latency estimates towards it.
+     * The frame position only moves in chunks on some mixers, so the estimates are smoothed to keep scheduling steady.
+     */
+    private void updateClock()
+    {
+        long playedFrames = line.getLongFramePosition();
+        if (playedFrames <= 0)
+        {
+            return;
+        }
+
+        long measuredOrigin = System.nanoTime() - framesToNanos(playedFrames);
+
+        // Everything written that hasn't been played yet is queued in front of the next sound
+        long measuredLatency = renderedFrames - playedFrames;
+
+        if (clockOriginNanos == 0)
+        {
+            clockOriginNanos = measuredOrigin;
+            outputLatencyFrames = measuredLatency;
+        }
+        else
+        {
+            clockOriginNanos += (measuredOrigin - clockOriginNanos) / CLOCK_SMOOTHING;
+            outputLatencyFrames += (measuredLatency - outputLatencyFrames) / CLOCK_SMOOTHING;
+        }
+    }
+
+    private static long framesToNanos(long frames)
+    {
+        return (long) (frames * 1_000_000_000.0 / FORMAT.getFrameRate());
+    }
+
+    private static long nanosToFrames(long nanos)
+    {
+        return Math.round(nanos * FORMAT.getFrameRate() / 1_000_000_000.0);
+    }
+
+    /**
+     * Mixes every active voice and the music stream into the output buffer for one block.
+     */
+    private void renderBlock()
+    {
+        Arrays.fill(mixBuffer, 0);
+
+        long blockStart = renderedFrames;
+
+        synchronized (voices)
+        {
+            for (Voice voice : voices)
+            {
+                byte[] data = voice.data;
+                if (data == null)
+                {
+                    continue;
+                }
+
+                // Scheduled for a later block
+                if (voice.startFrame >= blockStart + BLOCK_FRAMES)
+                {
+                    continue;
+                }
+
+                // A queued sound is only known to be heard once it starts being mixed, it could still have been retracted
+                // or stolen before now. Trace it at the time its first frame is heard
+                if (voice.sequence != 0 && voice.startFrame >= blockStart)
+                {
+                    tickTraceRecorder.record(TickTraceRecorder.AUDIO_START, clockOriginNanos + framesToNanos(voice.startFrame));
+                }
+
+                // A voice scheduled part way into this block starts at that exact frame
+                int offset = (int) Math.max(0, voice.startFrame - blockStart) * CHANNELS;
+
+                // Mix as many samples as this voice has left, up to the end of the block
+                int samples = Math.min(mixBuffer.length - offset, (data.length - voice.position) / 2);
+                int position = voice.position;
+                float gain = voice.gain;
+
+                if (voice.releaseFrames > 0)
+                {
+                    // A stolen voice ramps down to silence a frame at a time, then it's done
+                    int releaseFrames = voice.releaseFrames;
+                    samples = Math.min(samples, releaseFrames * CHANNELS);
+
+                    for (int i = offset; i < offset + samples; i++)
+                    {
+                        float fade = (float) releaseFrames / STEAL_FADE_FRAMES;
+                        int sample = (short) ((data[position + 1] << 8) | (data[position] & 0xff));
+                        mixBuffer[i] += (int) (sample * gain * fade);
+                        position += 2;
+
+                        if ((i - offset) % CHANNELS == CHANNELS - 1)
+                        {
+                            releaseFrames--;
+                        }
+                    }
+
+                    voice.releaseFrames = releaseFrames;
+                    if (releaseFrames <= 0)
+                    {
+                        voice.data = null;
+                        continue;
+                    }
+                }
+                else
+                {
+                    for (int i = offset; i < offset + samples; i++)
+                    {
+                        int sample = (short) ((data[position + 1] << 8) | (data[position] & 0xff));
+                        mixBuffer[i] += (int) (sample * gain);
+                        position += 2;
+                    }
+                }
+
+                // Free the voice once the whole sound has been mixed
+                if (position + 1 >= data.length)
+                {
+                    voice.data = null;
+                }
+                else
+                {
+                    voice.position = position;
+                }
+            }
+
+            // Advanced before the lock is let go, so a voice that started in this block never looks unstarted
+            // to retractQueued() or voice stealing and gets cut off after its first few frames
+            renderedFrames = blockStart + BLOCK_FRAMES;
+        }
+
+        musicStream.mixInto(mixBuffer);
+
+        // Clamp the mix to 16-bit and write it out little-endian
+        for (int i = 0; i < mixBuffer.length; i++)
+        {
+            int sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mixBuffer[i]));
+            outputBuffer[i * 2] = (byte) sample;
+            outputBuffer[i * 2 + 1] = (byte) (sample >> 8);
+        }
+    }
+
+    /**
+     * Converts PCM audio to the engine's {@link #FORMAT} (sample rate, channels, bit depth and endianness).
+     *
+     * @param format The format the data is currently in
+     * @param data   The raw audio data
+     * @return the converted data, the same array if it's already in the engine format, or null if it can't be converted
+     */
+    public static byte[] convert(AudioFormat format, byte[] data)
+    {
+        if (format.matches(FORMAT))
+        {
+            return data;
+        }
+
+        if (!AudioSystem.isConversionSupported(FORMAT, format))
+        {
+            log.debug("Can't convert {} to the audio engine format", format);
+            return null;
+        }
+
+        long frames = data.length / format.getFrameSize();
+
+        try (AudioInputStream source = new AudioInputStream(new ByteArrayInputStream(data), format, frames);
+             AudioInputStream converted = AudioSystem.getAudioInputStream(FORMAT, source))
+        {
+            return converted.readAllBytes();
+        }
+        catch (Exception e)
+        {
+            log.debug("Failed to convert audio to the engine format: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * A single playing sound, voices are reused so nothing is allocated while playing.
+     */
+    private static class Voice
+    {
+        // null when the voice is free
+        private byte[] data;
+        // Byte offset of the next sample to mix
+        private int position;
+        // Stream frame the voice starts playing on
+        private long startFrame;
+        private float gain;
+        // Frames left in the fade out after being stolen, 0 when the voice isn't being stolen
+        private int releaseFrames;
+        // What a queued sound is for so it can be retracted, 0 for sounds that weren't queued
+        private long sequence;
+    }
+}
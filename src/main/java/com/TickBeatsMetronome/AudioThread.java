@@ -0,0 +1,246 @@
+package com.TickBeatsMetronome;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Singleton;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * AudioThread runs every "play X at time T" request on one dedicated max priority thread.
+ *
+ * Starting audio can block on Java Sound (opening or starting Clips, waiting on the mixer). Instead of doing that work
+ * where the tick fires, TickSoundManager and MusicManager submit a command to a lock-free queue and return straight
+ * away, the audio thread picks it up and does the actual playing.
+ *
+ * Sounds are submitted from more than one thread: the client thread (game ticks, and the tick sounds and music
+ * of every tick when tick smoothing is off), the local tick thread (local ticks and their audio cues) and the key
+ * listener (song hotkeys fading out the music), and ticks from both tick threads can overlap around a config change.
+ * So any number of threads can submit: each one claims the next slot by moving the write index on with a
+ * compare-and-set, fills it in, then publishes it by bumping the slot's sequence number. The audio thread is the only
+ * reader, it runs a slot once its sequence says it's been published and hands it back by bumping the sequence again.
+ * Nobody ever waits on a lock.
+ *
+ * The queue is a fixed ring of reused command slots so submitting never allocates.
+ */
+@Slf4j
+@Singleton
+public class AudioThread
+{
+    // How many commands can be waiting at once, must be a power of two
+    private static final int QUEUE_SIZE = 64;
+
+    /**
+     * Something that plays audio, run on the audio thread when its command comes up.
+     */
+    public interface Player
+    {
+        /**
+         * @param data      PCM data in {@link AudioEngine#FORMAT}
+         * @param head      The start of data faded in for a crossfade, or null
+         * @param tail      The faded out continuation of the previous sound for a crossfade, or null
+         * @param volume    Volume to play at (0–150)
+         * @param timeNanos The System.nanoTime() the sound belongs to
+         * @param name      The sound's name for error messages, or null
+         */
+        void play(byte[] data, byte[] head, byte[] tail, int volume, long timeNanos, String name);
+    }
+
+    private final Command[] commands = new Command[QUEUE_SIZE];
+
+    // Each slot's sequence number: equal to the write index that can claim it when it's free,
+    // one more than that once its command is published, and QUEUE_SIZE more when the audio thread hands it back
+    private final AtomicLongArray sequences = new AtomicLongArray(QUEUE_SIZE);
+
+    // Total commands ever claimed / run, the slot is the count modulo QUEUE_SIZE. Only the audio thread moves readIndex
+    private final AtomicLong writeIndex = new AtomicLong();
+    private final AtomicLong readIndex = new AtomicLong();
+
+    private Thread thread;
+    private volatile boolean running = false;
+
+    public AudioThread()
+    {
+        for (int i = 0; i < QUEUE_SIZE; i++)
+        {
+            commands[i] = new Command();
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Starts the audio thread.
+     */
+    public synchronized void start()
+    {
+        // Don't start twice
+        if (running)
+        {
+            return;
+        }
+
+        running = true;
+
+        thread = new Thread(this::run, "Tick Beats Audio Commands");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Stops the audio thread, any commands still waiting are dropped.
+     * Call this in the plugin's shutDown() before the audio engine is stopped.
+     */
+    public synchronized void stop()
+    {
+        if (!running)
+        {
+            return;
+        }
+
+        running = false;
+        LockSupport.unpark(thread);
+
+        try
+        {
+            thread.join(1000);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+
+        // Drop whatever didn't get played so the sound data can be garbage collected.
+        // Submitters play straight away once running is false, so nothing is claiming slots by now
+        for (int i = 0; i < QUEUE_SIZE; i++)
+        {
+            commands[i].clear();
+            sequences.set(i, i);
+        }
+        readIndex.set(0);
+        writeIndex.set(0);
+    }
+
+    /**
+     * Queues a sound to be played on the audio thread.
+     * If the audio thread isn't running the sound is played straight away on the calling thread instead.
+     *
+     * @param player    What plays the sound
+     * @param data      PCM data in {@link AudioEngine#FORMAT}
+     * @param head      The start of data faded in for a crossfade, or null
+     * @param tail      The faded out continuation of the previous sound for a crossfade, or null
+     * @param volume    Volume to play at (0–150)
+     * @param timeNanos The System.nanoTime() the sound belongs to
+     * @param name      The sound's name for error messages, or null
+     * @return false if the queue was full and the sound was dropped
+     */
+    public boolean submit(Player player, byte[] data, byte[] head, byte[] tail, int volume, long timeNanos, String name)
+    {
+        if (!running)
+        {
+            player.play(data, head, tail, volume, timeNanos, name);
+            return true;
+        }
+
+        long write;
+        int slot;
+
+        // Claim a slot, if another thread claims the same one first just try the next
+        while (true)
+        {
+            write = writeIndex.get();
+            slot = (int) (write & (QUEUE_SIZE - 1));
+            long sequence = sequences.get(slot);
+
+            if (sequence == write)
+            {
+                if (writeIndex.compareAndSet(write, write + 1))
+                {
+                    break;
+                }
+            }
+            else if (sequence < write)
+            {
+                // The audio thread hasn't handed this slot back yet, it has fallen a whole queue behind.
+                // Something is very wrong so don't pile on more
+                log.debug("Audio command queue is full, dropping sound");
+                return false;
+            }
+        }
+
+        Command command = commands[slot];
+        command.player = player;
+        command.data = data;
+        command.head = head;
+        command.tail = tail;
+        command.volume = volume;
+        command.timeNanos = timeNanos;
+        command.name = name;
+
+        // Publish the command, the audio thread only runs a slot once its sequence is one past the write index
+        sequences.lazySet(slot, write + 1);
+
+        LockSupport.unpark(thread);
+        return true;
+    }
+
+    /**
+     * Runs commands as they come in, parks while there's nothing to do.
+     */
+    private void run()
+    {
+        while (running)
+        {
+            long read = readIndex.get();
+            int slot = (int) (read & (QUEUE_SIZE - 1));
+
+            // Nothing published in the next slot yet (it may be claimed but still being filled in)
+            if (sequences.get(slot) != read + 1)
+            {
+                LockSupport.park(this);
+                continue;
+            }
+
+            Command command = commands[slot];
+
+            try
+            {
+                command.player.play(command.data, command.head, command.tail, command.volume, command.timeNanos, command.name);
+            }
+            catch (Exception e)
+            {
+                log.debug("Audio command failed: {}", e.getMessage(), e);
+            }
+
+            // Let go of the data and hand the slot back for the write index a whole queue later
+            command.clear();
+            readIndex.lazySet(read + 1);
+            sequences.lazySet(slot, read + QUEUE_SIZE);
+        }
+    }
+
+    /**
+     * A queued "play X at time T" request, slots are reused so nothing is allocated per sound.
+     */
+    private static class Command
+    {
+        private Player player;
+        private byte[] data;
+        private byte[] head;
+        private byte[] tail;
+        private int volume;
+        private long timeNanos;
+        private String name;
+
+        private void clear()
+        {
+            player = null;
+            data = null;
+            head = null;
+            tail = null;
+            name = null;
+        }
+    }
+}
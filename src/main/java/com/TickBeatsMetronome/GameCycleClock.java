@@ -0,0 +1,144 @@
+package com.TickBeatsMetronome;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GameCycleClock tracks when the client's game cycles (one every 20ms, 30 per server tick) happen,
+ * from samples of Client.getGameCycle() taken every client tick.
+ *
+ * The client handles server packets once per game cycle, so what really matters about a GameTick is which cycle it
+ * arrived in, and the time the event reaches the plugin on top of that depends on how busy the client thread
+ * was that frame. Using the estimated time of its cycle instead ({@link #getCycleTime}) takes that
+ * frame to frame noise out before the arrival goes to the {@link TickEstimator}.
+ *
+ * Cycle times are estimated the same way as server ticks, a phase and period nudged by a fraction of each error,
+ * with bigger fractions right after a (re)start so it locks on within a few samples.
+ */
+public class GameCycleClock
+{
+    private static final long NOMINAL_CYCLE_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final long MIN_CYCLE_NANOS = TimeUnit.MICROSECONDS.toNanos(19800);
+    private static final long MAX_CYCLE_NANOS = TimeUnit.MICROSECONDS.toNanos(20200);
+
+    // Steady state gains, samples are frequent so these are smaller than the tick estimator's
+    private static final double ALPHA = 0.05;
+    private static final double BETA = ALPHA * ALPHA / (2 - ALPHA);
+
+    // Samples needed before cycle times are trusted
+    private static final int MIN_SAMPLES_FOR_LOCK = 10;
+
+    // A jump of more than this many cycles between samples (e.g. a loading screen) starts the estimate again
+    private static final int MAX_GAP_CYCLES = 50;
+
+    // Samples further off the estimate than this start the estimate again
+    private static final long MAX_ERROR_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // Cycle times are only used while samples are this fresh
+    private static final long MAX_SAMPLE_AGE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // The last sampled cycle and its estimated start time
+    private int phaseCycle = 0;
+    private long phaseNanos = 0;
+
+    private double cycleNanos = NOMINAL_CYCLE_NANOS;
+
+    private long lastSampleNanos = 0;
+    private int sampleCount = 0;
+
+    /**
+     * Feeds in the client's current game cycle.
+     *
+     * @param gameCycle Client.getGameCycle()
+     * @param timeNanos The time it was read at
+     */
+    public synchronized void sample(int gameCycle, long timeNanos)
+    {
+        int cycles = gameCycle - phaseCycle;
+
+        // Nothing new since the last sample (more than one frame in the same cycle)
+        if (sampleCount > 0 && cycles == 0)
+        {
+            return;
+        }
+
+        lastSampleNanos = timeNanos;
+
+        if (sampleCount == 0 || cycles < 0 || cycles > MAX_GAP_CYCLES)
+        {
+            restart(gameCycle, timeNanos);
+            return;
+        }
+
+        long predictedNanos = phaseNanos + Math.round(cycles * cycleNanos);
+        long errorNanos = timeNanos - predictedNanos;
+
+        if (Math.abs(errorNanos) > MAX_ERROR_NANOS)
+        {
+            restart(gameCycle, timeNanos);
+            return;
+        }
+
+        sampleCount++;
+
+        // Least squares gains while locking on, then the steady gains
+        double alpha = Math.max(ALPHA, 2.0 * (2 * sampleCount - 1) / (sampleCount * (sampleCount + 1.0)));
+        double beta = Math.max(BETA, 6.0 / (sampleCount * (sampleCount + 1.0)));
+
+        phaseCycle = gameCycle;
+        phaseNanos = predictedNanos + Math.round(alpha * errorNanos);
+        cycleNanos += beta * errorNanos / cycles;
+        cycleNanos = Math.max(MIN_CYCLE_NANOS, Math.min(MAX_CYCLE_NANOS, cycleNanos));
+    }
+
+    /**
+     * @param timeNanos A time from the same clock as the samples
+     * @return true if cycle times are locked on and recent enough to use at that time
+     */
+    public synchronized boolean isLocked(long timeNanos)
+    {
+        return sampleCount >= MIN_SAMPLES_FOR_LOCK && timeNanos - lastSampleNanos <= MAX_SAMPLE_AGE_NANOS;
+    }
+
+    /**
+     * @param gameCycle A game cycle, normally the current one
+     * @param timeNanos The time now, from the same clock as the samples
+     * @return The estimated time of the given game cycle, or timeNanos if not locked on or the estimate is way off
+     */
+    public synchronized long getCycleTime(int gameCycle, long timeNanos)
+    {
+        if (!isLocked(timeNanos))
+        {
+            return timeNanos;
+        }
+
+        long cycleTimeNanos = phaseNanos + Math.round((gameCycle - phaseCycle) * cycleNanos);
+        return Math.abs(cycleTimeNanos - timeNanos) > MAX_ERROR_NANOS ? timeNanos : cycleTimeNanos;
+    }
+
+    /**
+     * @return The estimated length of a game cycle in nanoseconds
+     */
+    public synchronized long getCycleNanos()
+    {
+        return Math.round(cycleNanos);
+    }
+
+    /**
+     * Forgets everything and starts locking on again from the next sample.
+     */
+    public synchronized void reset()
+    {
+        sampleCount = 0;
+        phaseCycle = 0;
+        phaseNanos = 0;
+        lastSampleNanos = 0;
+        cycleNanos = NOMINAL_CYCLE_NANOS;
+    }
+
+    private void restart(int gameCycle, long timeNanos)
+    {
+        phaseCycle = gameCycle;
+        phaseNanos = timeNanos;
+        sampleCount = 1;
+    }
+}
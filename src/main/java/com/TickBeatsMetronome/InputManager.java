@@ -24,6 +24,9 @@ public class InputManager implements net.runelite.client.input.KeyListener
     @Inject
     MusicPlaylistManager musicPlaylistManager;
 
+    @Inject
+    TickPatternManager tickPatternManager;
+
     // Stores if reset key is currently being held down
     public boolean resetActive = false;
 
@@ -47,10 +50,11 @@ public class InputManager implements net.runelite.client.input.KeyListener
         // keys are released
         resetActive = false;
 
-        // Handle hotkey for next song
+        // Handle hotkey for next song, the info box shows the new song straight away even if no ticks are coming in
         if (strictMatch(config.nextSongHotkey(), e))
         {
             musicPlaylistManager.playNextSong();
+            plugin.publishRenderModel();
             return;
         }
 
@@ -58,6 +62,7 @@ public class InputManager implements net.runelite.client.input.KeyListener
         if (strictMatch(config.previousSongHotkey(), e))
         {
             musicPlaylistManager.playPreviousSong();
+            plugin.publishRenderModel();
             return;
         }
 
@@ -168,6 +173,9 @@ public class InputManager implements net.runelite.client.input.KeyListener
         {
             resetActive = true;
             plugin.tickCount = config.startTick();
+
+            // Pull back any tick sound already queued for the next tick
+            plugin.onTickChangedByHotkey();
         } else{
             resetActive = false;
         }
@@ -181,15 +189,12 @@ public class InputManager implements net.runelite.client.input.KeyListener
     {
 
         // Get max ticks based on current beat
-        int maxTicks;
-        switch (plugin.beatNumber) {
-            case 1: maxTicks = config.beat1TickCount(); break;
-            case 2: maxTicks = config.beat2TickCount(); break;
-            case 3: maxTicks = config.beat3TickCount(); break;
-            default: maxTicks = config.beat1TickCount(); break;
-        }
+        int maxTicks = tickPatternManager.getPattern().getTickCount(plugin.beatNumber);
         // Calculate the plugin tick count using modulo while staying 1 based (not 0 based)
         plugin.tickCount = ((plugin.tickCount - 1 + delta + maxTicks) % maxTicks) + 1;
+
+        // Swap any tick sound already queued for the next tick for the right one
+        plugin.onTickChangedByHotkey();
     }
 
     /**
@@ -199,9 +204,12 @@ public class InputManager implements net.runelite.client.input.KeyListener
     private void adjustBeat(int delta)
     {
         // Clamp to the user defined beats
-        int maxBeats = config.enabledBeats();
+        int maxBeats = tickPatternManager.getPattern().getEnabledBeats();
 
         // Update beatNumber using modulo logic to wrap between 1 and maxBeats
         plugin.beatNumber = ((plugin.beatNumber - 1 + delta + maxBeats) % maxBeats) + 1;
+
+        // Swap any tick sound already queued for the next tick for the right one
+        plugin.onTickChangedByHotkey();
     }
 }
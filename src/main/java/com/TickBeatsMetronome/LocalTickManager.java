@@ -6,21 +6,36 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.inject.Singleton;
-import java.util.concurrent.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * LocalTickManager tracks tick timing independently though with the help of RuneLite's game tick events,
- * it works by nudging a few milliseconds towards the game tick, every game tick, imperceptibly drifting towards
- * an almost perfect average to determine exactly when server ticks should happen without jitter caused by lag
+ * every game tick's arrival time is fed into a {@link TickEstimator} which locks onto the phase and period of the
+ * server ticks while ignoring lag spikes, and local ticks fire on that estimated grid
  * for when a metronome that sounds good and consistent is more important than perfect game ticks that include server lag
+ *
+ * All timing comes from a {@link TickClock}, System.nanoTime() in the plugin (monotonic, unaffected by wall clock
+ * changes) or a {@link SimulatedTickClock} to replay tick timing faster than real time. Every local tick is scheduled
+ * for an absolute deadline on the estimated grid rather than the interval from whenever the previous callback finished.
+ * That way a slow callback or a late wakeup delays one tick but never the ones after it.
+ *
+ * The client's game cycle counter (20ms cycles) is sampled every client tick by a {@link GameCycleClock}, and game tick
+ * arrivals are swapped for the estimated time of the cycle they arrived in before going to the estimator, which takes out
+ * the noise of how busy the client thread was that frame. {@link #getNanosUntilNextTick()} and
+ * {@link #getTickProgress()} give where in the current tick we are, for anything that wants to look ahead.
+ *
+ * Game tick intervals, local tick intervals and how far apart local and game ticks land are counted into
+ * {@link TickHistogram}s, so it's possible to see how much smoothing actually helps on a given machine.
+ *
+ * Since local ticks are known ahead of time, an audio cue can also be fired a little before each tick
+ * (see {@link #setAudioLeadNanos}) so audio that takes a while to come out of the speakers is heard right on the tick.
  */
 @Slf4j
 @Singleton
 public class LocalTickManager
 {
     // Base values
-    private static final long BASE_TICK_INTERVAL_MS = 600; // Standard tick duration
-    private static final long MAX_ADJUSTMENT_MS = 5;      // Maximum per-tick interval correction in milliseconds
+    private static final long MAX_AUDIO_LEAD_NANOS = TimeUnit.MILLISECONDS.toNanos(250);     // Audio cues never fire more than this far before the tick
 
     // Tick counters
     @Getter
@@ -28,25 +43,169 @@ public class LocalTickManager
     @Getter
     private int localTickCount = 0;  // Increments each time local tick fires
 
-    // Time tracking
+    // Time tracking (TickClock.nanoTime())
     @Getter
-    private long lastLocalTickTime = 0;         // Timestamp of the last local tick
+    private volatile long lastLocalTickNanos = 0;   // Deadline of the last local tick
     @Getter
-    private long lastGameTickTime = 0;         // Timestamp of the last game tick
+    private long lastGameTickNanos = 0;             // When the last game tick arrived
 
-    private long nextTickInterval = BASE_TICK_INTERVAL_MS;
+    // Estimates when server ticks happen from game tick arrivals
+    @Getter
+    private final TickEstimator tickEstimator;
+
+    // Estimates when client game cycles start, for snapping game tick arrivals to them
+    @Getter
+    private final GameCycleClock gameCycleClock = new GameCycleClock();
+
+    // Logs game tick arrivals and local tick fires when a trace is being recorded, null for none
+    private volatile TickTraceRecorder traceRecorder = null;
+
+    // When the last local tick actually ran, as opposed to when it was due
+    private volatile long lastLocalFireNanos = 0;
+
+    // Timing stats, game tick stats are recorded on the client thread and local tick stats on the tick thread
+    @Getter
+    private final TickHistogram gameTickIntervals = new TickHistogram("Game tick interval",
+            0, TimeUnit.MILLISECONDS.toNanos(1200), TimeUnit.MICROSECONDS.toNanos(500));
+    @Getter
+    private final TickHistogram localTickIntervals = new TickHistogram("Local tick interval",
+            0, TimeUnit.MILLISECONDS.toNanos(1200), TimeUnit.MICROSECONDS.toNanos(500));
+    @Getter
+    private final TickHistogram phaseErrors = new TickHistogram("Local vs game tick phase error",
+            0, TimeUnit.MILLISECONDS.toNanos(300), TimeUnit.MICROSECONDS.toNanos(250));
 
-    // Executor for scheduling ticks
-    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
-    private ScheduledFuture<?> tickLoop = null;
+    // Time the currently firing local tick was scheduled for, ignoring how late the clock woke up
+    @Getter
+    private volatile long tickDeadlineNanos = 0;
+
+    // How far before each tick the audio cue fires, 0 means no audio cue
+    @Getter
+    private volatile long audioLeadNanos = 0;
+
+    // Time the currently firing audio cue was scheduled for (the upcoming tick's deadline minus the lead)
+    @Getter
+    private volatile long audioCueNanos = 0;
+
+    // Clock for reading the time and scheduling ticks
+    private final TickClock clock;
+    private TickClock.Task tickLoop = null;
+    private TickClock.Task audioCue = null;
 
     // Logic to run on each local tick
     private final Runnable onTickCallback;
 
+    // Logic to run ahead of each local tick to start its audio
+    private final Runnable onAudioCueCallback;
+
     @Inject
-    public LocalTickManager(Runnable onTickCallback)
+    public LocalTickManager(Runnable onTickCallback, Runnable onAudioCueCallback)
     {
+        this(new SystemTickClock(), onTickCallback, onAudioCueCallback);
+    }
+
+    /**
+     * @param clock Where the time comes from and ticks are scheduled, e.g. a {@link SimulatedTickClock}
+     */
+    public LocalTickManager(TickClock clock, Runnable onTickCallback, Runnable onAudioCueCallback)
+    {
+        this(clock, new TickEstimator(), onTickCallback, onAudioCueCallback);
+    }
+
+    /**
+     * @param clock         Where the time comes from and ticks are scheduled, e.g. a {@link SimulatedTickClock}
+     * @param tickEstimator What local ticks are placed with, e.g. a differently tuned estimator when replaying a trace
+     */
+    public LocalTickManager(TickClock clock, TickEstimator tickEstimator, Runnable onTickCallback, Runnable onAudioCueCallback)
+    {
+        this.clock = clock;
+        this.tickEstimator = tickEstimator;
         this.onTickCallback = onTickCallback;
+        this.onAudioCueCallback = onAudioCueCallback;
+    }
+
+    /**
+     * Sets how far before each tick the audio cue fires, takes effect from the next scheduled tick.
+     * @param leadNanos The output latency to make up for, 0 turns the audio cue off
+     */
+    public void setAudioLeadNanos(long leadNanos)
+    {
+        audioLeadNanos = Math.max(0, Math.min(leadNanos, MAX_AUDIO_LEAD_NANOS));
+    }
+
+    /**
+     * @param traceRecorder Where game tick arrivals and local tick fires are logged, null to stop logging them
+     */
+    public void setTraceRecorder(TickTraceRecorder traceRecorder)
+    {
+        this.traceRecorder = traceRecorder;
+    }
+
+    /**
+     * Samples the client's game cycle counter, call this every client tick.
+     * @param gameCycle Client.getGameCycle()
+     */
+    public void onGameCycle(int gameCycle)
+    {
+        gameCycleClock.sample(gameCycle, clock.nanoTime());
+    }
+
+    /**
+     * @return Nanoseconds until the next tick on the estimated grid, or -1 if no ticks have been seen yet
+     */
+    public long getNanosUntilNextTick()
+    {
+        long now = clock.nanoTime();
+        long nextTick = tickEstimator.predictTickAfter(now);
+        return nextTick == 0 ? -1 : nextTick - now;
+    }
+
+    /**
+     * Predicts when the next few ticks will happen on the estimated grid, for queueing their audio ahead of time.
+     *
+     * @param afterNanos       Only ticks after this time are predicted, e.g. now, or half a tick after the current tick
+     *                         from inside the tick callback (in case a game tick just moved the grid a little later)
+     * @param tickNanos        Filled with the predicted times of the next tickNanos.length ticks after afterNanos
+     * @param uncertaintyNanos Filled with how far off each prediction could be, or null if not needed
+     * @return false if no ticks have been seen yet and nothing was filled in
+     */
+    public boolean predictNextTicks(long afterNanos, long[] tickNanos, long[] uncertaintyNanos)
+    {
+        long previousNanos = afterNanos;
+        long halfPeriod = tickEstimator.getPeriodNanos() / 2;
+
+        for (int i = 0; i < tickNanos.length; i++)
+        {
+            // The first tick after the given time, then each one at least half a tick after the one before, the same as scheduled ticks
+            long predictedNanos = tickEstimator.predictTickAfter(i == 0 ? previousNanos : previousNanos + halfPeriod);
+            if (predictedNanos == 0)
+            {
+                return false;
+            }
+
+            tickNanos[i] = predictedNanos;
+            if (uncertaintyNanos != null)
+            {
+                uncertaintyNanos[i] = tickEstimator.getUncertaintyNanos(i + 1);
+            }
+            previousNanos = predictedNanos;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return How far through the current tick we are, from 0 (just ticked) to 1 (about to tick), or 0 if no ticks have been seen yet
+     */
+    public double getTickProgress()
+    {
+        long untilNextTick = getNanosUntilNextTick();
+        if (untilNextTick < 0)
+        {
+            return 0;
+        }
+
+        long period = tickEstimator.getPeriodNanos();
+        return Math.max(0, Math.min(1, 1 - (double) untilNextTick / period));
     }
 
     /**
@@ -54,9 +213,55 @@ public class LocalTickManager
      */
     public void updateLocalTick()
     {
-        lastGameTickTime = System.currentTimeMillis();
+        long now = clock.nanoTime();
+        updateLocalTick(now, now);
+    }
+
+    /**
+     * Same as {@link #updateLocalTick()}, but uses the estimated time of the game cycle the tick arrived in for the
+     * tick grid when the game cycles are being followed.
+     * @param gameCycle Client.getGameCycle() when the GameTick arrived
+     */
+    public void updateLocalTick(int gameCycle)
+    {
+        long now = clock.nanoTime();
+        updateLocalTick(now, gameCycleClock.getCycleTime(gameCycle, now));
+    }
+
+    /**
+     * @param now         When the game tick arrived
+     * @param arrivalNanos When the game tick arrived according to the game cycles, or now
+     */
+    private void updateLocalTick(long now, long arrivalNanos)
+    {
+
+        TickTraceRecorder recorder = traceRecorder;
+        if (recorder != null)
+        {
+            recorder.record(TickTraceRecorder.GAME_TICK, now);
+        }
+
+        // Record how long it's been since the last game tick
+        if (lastGameTickNanos != 0)
+        {
+            gameTickIntervals.record(now - lastGameTickNanos);
+        }
+
+        // Record how far this game tick is from the closest local tick, either the last one or the one coming up
+        long lastLocalFire = lastLocalFireNanos;
+        if (lastLocalFire != 0)
+        {
+            long sinceLocalTick = now - lastLocalFire;
+            long period = tickEstimator.getPeriodNanos();
+            phaseErrors.record(sinceLocalTick > period / 2 ? Math.abs(period - sinceLocalTick) : sinceLocalTick);
+        }
+
+        lastGameTickNanos = now;
         gameTickCount++;
 
+        // Let the estimator correct the tick grid with this arrival, local ticks scheduled from now on follow it
+        tickEstimator.onTick(arrivalNanos);
+
         // If local metronome hasn't incremented yet, start it up
         if(localTickCount == 0){
             localTickCount++;
@@ -70,59 +275,12 @@ public class LocalTickManager
             localTickCount = localTickCount - gameTickMax;
         }
 
-        // It appears logging in or world hopping can cause an offset of a few hundred ms
-        // This is used to allow for a more aggressive tick correction at the start to speed up syncing to game ticks
-        long maxAdjustment;
-        if(gameTickCount < 10){
-            // Used to make tick correction less aggressive with each tick
-            long multiplier = 10 - gameTickCount;
-            maxAdjustment = 10 * multiplier;
-        }else{
-            maxAdjustment = MAX_ADJUSTMENT_MS;
-        }
-
         // If for some reason ticks get way out of sync make them equal to each other
         int tickDifference = gameTickCount - localTickCount;
         if (tickDifference > 1 || tickDifference < 0){
             localTickCount = gameTickCount;
             log.debug("Correcting out of sync ticks");
         }
-
-        long timeDifference;
-
-        // If gametick is ahead of local tick then the next local tick needs to happen sooner than 600ms else later
-        if(gameTickCount > localTickCount)
-        {
-            // If game tick is before local tick
-            // Calculate when the next local tick is set to fire using the same logic as the local tick scheduler
-            long nextLocalTickTime = lastLocalTickTime + nextTickInterval;
-
-            // Get the time difference of how far off the local tick is from this game tick
-            // Negative time difference means game tick is earlier positive means local tick is earlier
-            timeDifference = lastGameTickTime - nextLocalTickTime;
-
-            // If the time difference between local and game ticks is less than our max adjustment
-            // adjust by that much to make things slightly more accurate
-            // else subtract our max adjustment from 600ms to get the next tick interval
-            if(Math.abs(timeDifference) < maxAdjustment)
-            {
-                nextTickInterval = BASE_TICK_INTERVAL_MS - Math.abs(timeDifference);
-            }else{
-                nextTickInterval = BASE_TICK_INTERVAL_MS - maxAdjustment;
-            }
-        }else{
-            // If game tick is after local tick use the tick counts to see how far apart they are
-            timeDifference = lastGameTickTime - lastLocalTickTime;
-
-            // If the time difference is less than our max adjustment,
-            // adjust by that much to make things slightly more accurate
-            if(timeDifference < maxAdjustment)
-            {
-                nextTickInterval = BASE_TICK_INTERVAL_MS + timeDifference;
-            }else{
-                nextTickInterval = BASE_TICK_INTERVAL_MS + maxAdjustment;
-            }
-        }
     }
 
     /*
@@ -138,22 +296,77 @@ public class LocalTickManager
         }
 
         log.debug("Starting local tick loop.");
-        lastLocalTickTime = System.currentTimeMillis();
+        lastLocalTickNanos = clock.nanoTime();
         scheduleNextTick();
     }
 
     /*
      * Schedules the next local tick
-     * Each tick reschedules itself with a slightly adjusted interval
+     * Each tick reschedules itself with a slightly adjusted interval, counted from the last tick's deadline
      */
     private void scheduleNextTick()
     {
-        tickLoop = executor.schedule(() -> {
+        long now = clock.nanoTime();
+        long period = tickEstimator.getPeriodNanos();
+
+        // The next tick is the next one on the estimated grid, at least half a tick after the last one was due
+        // (so a grid correction can never fire two ticks close together), no matter how late that tick actually ran
+        long deadline = tickEstimator.predictTickAfter(lastLocalTickNanos + period / 2);
+        if (deadline == 0)
+        {
+            deadline = lastLocalTickNanos + period;
+        }
+
+        // If we've fallen more than a whole tick behind (e.g. the computer was asleep) skip ahead to the next tick
+        // instead of firing a burst of ticks to catch up
+        if (now - deadline > period)
+        {
+            log.debug("Local tick loop fell behind, skipping ahead");
+            deadline = Math.max(tickEstimator.predictTickAfter(now), now);
+        }
+
+        // Remember exactly when this tick is meant to happen so audio can be placed on that time
+        final long deadlineNanos = deadline;
+
+        // Fire the audio cue early by the lead so the audio it starts comes out of the speakers on the tick
+        final long leadNanos = audioLeadNanos;
+        if (leadNanos > 0)
+        {
+            audioCue = clock.schedule(() -> {
+                tickDeadlineNanos = deadlineNanos;
+                audioCueNanos = deadlineNanos - leadNanos;
+
+                onAudioCueCallback.run();
+
+            }, deadlineNanos - leadNanos);
+        }
+        else
+        {
+            audioCue = null;
+        }
+
+        tickLoop = clock.schedule(() -> {
+            tickDeadlineNanos = deadlineNanos;
+
+            // Record how long it's actually been since the last local tick ran
+            long firedNanos = clock.nanoTime();
+            if (lastLocalFireNanos != 0)
+            {
+                localTickIntervals.record(firedNanos - lastLocalFireNanos);
+            }
+            lastLocalFireNanos = firedNanos;
+
+            TickTraceRecorder recorder = traceRecorder;
+            if (recorder != null)
+            {
+                recorder.record(TickTraceRecorder.LOCAL_TICK, firedNanos);
+            }
+
             // Run local metronome
             onTickCallback.run();
 
-            //save the current time
-            lastLocalTickTime = System.currentTimeMillis();
+            // Save when this tick was due (not when it ran) so the next deadline doesn't pick up any lateness
+            lastLocalTickNanos = deadlineNanos;
 
             // Count this local tick
             localTickCount++;
@@ -161,25 +374,55 @@ public class LocalTickManager
             // Schedule the next tick
             scheduleNextTick();
 
-        }, nextTickInterval, TimeUnit.MILLISECONDS); //schedule the next local tick according to our tick interval
+        }, deadlineNanos); //schedule the next local tick for its deadline
     }
 
     /*
      * Stops the local tick loop and resets all counters/timers
-     * Call on logout or shutdown
+     * Call on shutdown, or resync() to keep the learned tick length
      */
     public void reset()
     {
         log.debug("Resetting local tick manager.");
 
-        // Stop any active tick loops
+        // Stop any active tick loops and reset counters and timing
+        resync();
+
+        // Forget the learned tick length too
+        tickEstimator.reset();
+        gameCycleClock.reset();
+    }
+
+    /*
+     * Stops the local tick loop and finds the tick phase again from the next game tick, keeping the learned tick length
+     * Call on world hops and logouts, where the ticks move but are still the same length
+     */
+    public void resync()
+    {
+        log.debug("Resyncing local tick manager.");
+
         stopTickLoop();
 
-        // Reset counters and timing
         gameTickCount = 0;
         localTickCount = 0;
-        lastLocalTickTime = 0;
-        nextTickInterval = BASE_TICK_INTERVAL_MS;
+        lastLocalTickNanos = 0;
+        lastLocalFireNanos = 0;
+        lastGameTickNanos = 0;
+        tickEstimator.resetPhase();
+    }
+
+    /**
+     * @return Every timing histogram with its buckets, for writing to a log file
+     */
+    public String formatTimingStats()
+    {
+        StringBuilder builder = new StringBuilder();
+        gameTickIntervals.appendTo(builder);
+        builder.append('\n');
+        localTickIntervals.appendTo(builder);
+        builder.append('\n');
+        phaseErrors.appendTo(builder);
+        return builder.toString();
     }
 
     /*
@@ -189,9 +432,15 @@ public class LocalTickManager
     {
         if (tickLoop != null)
         {
-            tickLoop.cancel(true);
+            tickLoop.cancel();
             tickLoop = null;
         }
+
+        if (audioCue != null)
+        {
+            audioCue.cancel();
+            audioCue = null;
+        }
     }
 
     /*
@@ -202,6 +451,6 @@ public class LocalTickManager
     {
         log.debug("Shutting down local tick manager.");
         reset();
-        executor.shutdownNow();
+        clock.shutdown();
     }
 }
\ No newline at end of file
@@ -6,16 +6,58 @@ public class MusicBeat
     private final int beatIndex;
     private final byte[] audioData;
 
+    // The first few ms of this beat faded in, played instead of the start of audioData when this beat is spliced in
+    private final byte[] fadeInHead;
+
+    // The first few ms of the beat that comes after this one in the track, faded out.
+    // Played after this beat when something other than the next beat follows it, so this beat doesn't just cut off
+    private final byte[] fadeOutTail;
+
+    // The track this beat belongs to, set when the track is built from its beats
+    private MusicTrack track;
+
     public MusicBeat(int barIndex, int beatIndex, byte[] audioData)
+    {
+        this(barIndex, beatIndex, audioData, null, null);
+    }
+
+    public MusicBeat(int barIndex, int beatIndex, byte[] audioData, byte[] fadeInHead, byte[] fadeOutTail)
     {
         this.barIndex = barIndex;
         this.beatIndex = beatIndex;
         this.audioData = audioData;
+        this.fadeInHead = fadeInHead;
+        this.fadeOutTail = fadeOutTail;
     }
 
     public int getBarIndex() { return barIndex; }
     public int getBeatIndex() { return beatIndex; }
     public byte[] getAudioData() { return audioData; }
+    public byte[] getFadeInHead() { return fadeInHead; }
+    public byte[] getFadeOutTail() { return fadeOutTail; }
+    public MusicTrack getTrack() { return track; }
+
+    void setTrack(MusicTrack track)
+    {
+        this.track = track;
+    }
+
+    /**
+     * @param previous The beat that was played before this one
+     * @return true if this beat comes straight after the previous one in the same track, so no crossfade is needed
+     */
+    public boolean follows(MusicBeat previous)
+    {
+        // Beats from another track (or another load of this one) never follow on, even if their indexes line up
+        if (track == null || track != previous.track)
+        {
+            return false;
+        }
+
+        int previousIndex = (previous.barIndex - 1) * MusicTrack.BEATS_PER_BAR + previous.beatIndex;
+        int index = (barIndex - 1) * MusicTrack.BEATS_PER_BAR + beatIndex;
+        return index == previousIndex + 1;
+    }
 
     @Override
     public String toString()
@@ -24,16 +24,36 @@ public class MusicManager
     @Inject
     private  MusicPlaylistManager musicPlaylistManager;
 
+    @Inject
+    private AudioEngine audioEngine;
+
+    @Inject
+    private AudioThread audioThread;
+
+    // Plays beats on the audio thread, kept in a field so submitting a beat doesn't create a new one every tick
+    private final AudioThread.Player beatPlayer = this::playBeatData;
+
+    // Fades out the music stream on the audio thread, so it happens after any beat submitted before it
+    private final AudioThread.Player musicStreamStopper = (data, head, tail, volume, timeNanos, name) -> audioEngine.stopMusic();
+
+    // Format of the current track's beats, read on the audio thread in case a beat has to fall back to a Clip
+    private volatile AudioFormat beatFormat = AudioEngine.FORMAT;
+
     @Getter
     private MusicTrack currentTrack = null;
 
     private int volume = 100;
+    // System.nanoTime() the current tick was meant to happen at, used to schedule beats
+    private long tickNanos = 0;
     private int currentBar = 1;
     //bar beat should always be 1 - 4 referencing a beat in the bar
     private int barBeat = 1;
     //current beat that matches the game tick number
     private int tickBeat = 1;
 
+    // The last beat that was played, used to tell when the next beat is spliced in out of order and needs a crossfade
+    private MusicBeat lastBeat = null;
+
     @Getter
     private boolean isPlaying = false;
 
@@ -101,9 +121,10 @@ public class MusicManager
      */
     private void loadTrack(MusicTrackOption option)
     {
-        // Reset state and clear old track
+        // Reset state and clear old track, none of its music should be heard once the new one is loaded
         currentTrack = null;
         reset();
+        stopMusicStream();
 
         currentTrack = musicTrackLoader.loadFromResource(option);
 
@@ -119,6 +140,22 @@ public class MusicManager
     {
         reset();
         isPlaying = false;
+
+        // Beats already in the music stream would keep playing for up to a couple of beats, fade them out now.
+        // Nothing was played since the last stop if there's no last beat, so there's nothing to fade
+        if (lastBeat != null)
+        {
+            stopMusicStream();
+        }
+        lastBeat = null;
+    }
+
+    /**
+     * Fades out any music queued in the music stream.
+     */
+    private void stopMusicStream()
+    {
+        audioThread.submit(musicStreamStopper, null, null, null, 0, 0, null);
     }
 
     /**
@@ -136,16 +173,18 @@ public class MusicManager
      * @param tickCount How many ticks per beat the user has configured
      * @param pluginTick Which tick this is within the current beat (1-based)
      * @param musicVolume How loud to play music clips, 100 is full, goes up to 150 for boosted audio
+     * @param tickNanos The System.nanoTime() this tick was meant to happen at
      */
-    public void onTick(int tickCount, int pluginTick, int musicVolume) {
+    public void onTick(int tickCount, int pluginTick, int musicVolume, long tickNanos) {
 
         //if for any reason the current track is null or is playing is set to false, stop the track and don't do anything
         if(currentTrack == null || !isPlaying){
             stop();
             return;
         }
-        //set the volume field on every tick
+        //set the volume and tick time fields on every tick
         volume = musicVolume;
+        this.tickNanos = tickNanos;
 
         //if the tick from our plugin doesn't match the music manager tick we're using to determine bar beat
         //update the Music Manager tick beat, this happens when the user adjust which tick they're on
@@ -453,7 +492,9 @@ public class MusicManager
 
     /**
      * Plays a 600ms audio clip for a specific bar and beat.
-     * Uses Java's AudioSystem to load a new Clip and play it.
+     * Picks the beat (and crossfade) here, then hands it to the AudioThread which mixes the beat into the
+     * AudioEngine's output line (or appends it to the music stream with gapless music on), if the engine isn't running
+     * it falls back to loading a new Clip from Java's AudioSystem and playing it.
      * Ensures that Clips are always cleaned up to prevent memory leaks,
      * even in the case of playback failure.
      *
@@ -477,12 +518,65 @@ public class MusicManager
             return;
         }
 
-        try
+        // When the tick handlers skip or replay a beat (odd tick modes, the end of a bar or song) the audio on either
+        // side of the splice doesn't line up and would click, so crossfade the previous beat's natural continuation
+        // into this beat's faded in start. Both were baked when the track was loaded
+        byte[] fadeInHead = null;
+        byte[] fadeOutTail = null;
+        if (lastBeat != null && !musicBeat.follows(lastBeat))
         {
-            // Fetch audio format and raw beat data (PCM bytes)
-            AudioFormat format = currentTrack.getFormat();
-            byte[] data = musicBeat.getAudioData();
+            fadeInHead = musicBeat.getFadeInHead();
+            fadeOutTail = lastBeat.getFadeOutTail();
+        }
+        lastBeat = musicBeat;
+        beatFormat = currentTrack.getFormat();
 
+        // Play it on the audio thread so the tick thread never waits on Java Sound
+        audioThread.submit(beatPlayer, musicBeat.getAudioData(), fadeInHead, fadeOutTail, volume, tickNanos, null);
+    }
+
+    /**
+     * Plays a beat's audio, run on the AudioThread.
+     *
+     * @param data        The beat's PCM data
+     * @param fadeInHead  The start of the beat faded in when it's spliced in out of order, or null
+     * @param fadeOutTail The previous beat's faded out continuation when this beat is spliced in out of order, or null
+     * @param beatVolume  How loud to play the beat (0–150)
+     * @param beatNanos   The System.nanoTime() the beat's tick was meant to happen at
+     */
+    private void playBeatData(byte[] data, byte[] fadeInHead, byte[] fadeOutTail, int beatVolume, long beatNanos, String name)
+    {
+        AudioFormat format = beatFormat;
+
+        // Beats are converted to the engine format when the track is loaded, so they can go straight to the engine.
+        // A track the AudioSystem couldn't convert keeps its own format, which the engine would play garbled, so it can only go to a Clip
+        if (format.matches(AudioEngine.FORMAT))
+        {
+            // With gapless music on, the beat picked by the tick handlers is appended to the music stream
+            // so it starts exactly where the last one ended
+            if (config.streamMusic())
+            {
+                if (audioEngine.queueMusic(data, fadeInHead, fadeOutTail, beatVolume))
+                {
+                    return;
+                }
+            }
+            // When sample accurate ticks are on, beats are scheduled on the same grid as the tick sounds so they stay together
+            else if (config.sampleAccurateTicks())
+            {
+                if (audioEngine.playCrossfadedAt(data, fadeInHead, fadeOutTail, beatVolume, beatNanos))
+                {
+                    return;
+                }
+            }
+            else if (audioEngine.playCrossfaded(data, fadeInHead, fadeOutTail, beatVolume))
+            {
+                return;
+            }
+        }
+
+        try
+        {
             // Create a new Clip from the AudioSystem
             Clip clip = AudioSystem.getClip();
 
@@ -490,7 +584,7 @@ public class MusicManager
             clip.open(format, data, 0, data.length);
 
             // Apply current volume settings
-            setClipVolume(clip);
+            setClipVolume(clip, beatVolume);
 
             // Register a listener to automatically close the clip after playback finishes
             clip.addLineListener(event -> {
@@ -505,18 +599,18 @@ public class MusicManager
         }
         catch (Exception e)
         {
-            log.debug("Failed to play beat at bar {} beat {}: {}", bar, beat, e.getMessage(), e);
+            log.debug("Failed to play beat: {}", e.getMessage(), e);
         }
     }
 
     /**
      * Converts the plugin's volume percentage to decibels and sets it on the given audio clip
-     * The volume percentage is stored in the `volume` field (0–150),
-     * where 100 is standard volume and 150 is boosted.
+     * The volume percentage is (0–150), where 100 is standard volume and 150 is boosted.
      *
      * @param clip the Clip to apply volume adjustments to
+     * @param volume the volume percentage to apply
      */
-    private void setClipVolume(Clip clip)
+    private void setClipVolume(Clip clip, int volume)
     {
         // Check if the clip supports master gain control (volume)
         // if not return
@@ -359,6 +359,9 @@ public class MusicPlaylistManager
             currentTrackNumber++;
             getCurrentTrack();
             musicManager.stop();
+
+            // Load it now rather than on tick 1, so the info box shows the new song straight away
+            musicManager.prepMusicTrack();
         }
     }
 
@@ -369,6 +372,7 @@ public class MusicPlaylistManager
         if(config.playbackMode() != TickBeatsMetronomeConfig.PlaybackMode.MANUAL){
             getPreviousTrack();
             musicManager.stop();
+            musicManager.prepMusicTrack();
         }
     }
 
@@ -0,0 +1,209 @@
+package com.TickBeatsMetronome;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * MusicStream is a ring buffer of music audio that the AudioEngine mixes in continuously.
+ *
+ * Instead of starting every 600ms beat as its own sound (which can leave a gap or an overlap at every beat boundary
+ * depending on when the tick fires), MusicManager appends the beat it picks for each tick to the end of the stream
+ * and the render thread plays it back to back with the last one.
+ *
+ * A small cushion of audio is kept queued so a tick that fires a little late doesn't leave the stream empty,
+ * and if ticks run slightly ahead of the audio clock the extra queued audio is trimmed so music stays on the tick.
+ * Beats spliced next to a beat they don't follow are crossfaded in the ring so the splice doesn't click.
+ * All audio must be in {@link AudioEngine#FORMAT}.
+ */
+@Slf4j
+public class MusicStream
+{
+    private static final int CHANNELS = 2;
+    private static final int FRAME_SIZE = 4;
+
+    // Audio kept queued ahead of the render thread to absorb late ticks (2205 frames is 50ms)
+    private static final int CUSHION_FRAMES = 2205;
+
+    // Length of the fade out put on queued audio when it's trimmed (441 frames is 10ms)
+    private static final int TRIM_FADE_FRAMES = 441;
+
+    private final byte[] ring;
+    private final int capacityFrames;
+
+    // Total frames ever written / read, the ring position is the count modulo capacity
+    private long writeFrame = 0;
+    private long readFrame = 0;
+
+    private volatile float gain = 1f;
+
+    /**
+     * @param capacityFrames How many frames the ring can hold, should fit at least two beats
+     */
+    public MusicStream(int capacityFrames)
+    {
+        this.capacityFrames = capacityFrames;
+        this.ring = new byte[capacityFrames * FRAME_SIZE];
+    }
+
+    /**
+     * Appends a beat to the end of the stream.
+     *
+     * @param data   PCM data in {@link AudioEngine#FORMAT}
+     * @param head   The start of data faded in, written in place of it, or null to write data as is
+     * @param tail   The natural continuation of the previous beat faded out, mixed over the head, or null for none
+     * @param volume Volume to play at (0–150), applies to everything still queued too
+     */
+    public synchronized void queue(byte[] data, byte[] head, byte[] tail, int volume)
+    {
+        gain = Math.max(0, volume) / 100f;
+
+        long buffered = writeFrame - readFrame;
+
+        if (buffered == 0)
+        {
+            // The stream ran dry (or is just starting), put the cushion back in front of this beat.
+            // Nothing is left for the tail to carry on from
+            writeSilence(CUSHION_FRAMES);
+            tail = null;
+        }
+        else if (buffered > CUSHION_FRAMES * 2)
+        {
+            // Ticks are running ahead of the audio clock, drop the end of what's queued so this beat isn't late.
+            // The previous beat now gets cut part way through, so fade it out instead of carrying it on with the tail
+            writeFrame = readFrame + CUSHION_FRAMES;
+            fadeOutEnd(TRIM_FADE_FRAMES);
+            tail = null;
+            log.debug("Music stream trimmed {} frames to stay on the tick", buffered - CUSHION_FRAMES);
+        }
+
+        long spliceFrame = writeFrame;
+        int frames = Math.min(data.length / FRAME_SIZE, capacityFrames - (int) (writeFrame - readFrame));
+
+        if (head != null && head.length < data.length)
+        {
+            int headFrames = Math.min(head.length / FRAME_SIZE, frames);
+            write(head, 0, headFrames);
+            write(data, headFrames, frames - headFrames);
+        }
+        else
+        {
+            write(data, 0, frames);
+        }
+
+        if (tail != null)
+        {
+            mixAt(tail, spliceFrame, Math.min(tail.length / FRAME_SIZE, frames));
+        }
+    }
+
+    /**
+     * Fades out and drops everything queued, so music stops within 10ms without clicking.
+     */
+    public synchronized void fadeOut()
+    {
+        writeFrame = readFrame + Math.min(TRIM_FADE_FRAMES, writeFrame - readFrame);
+        fadeOutEnd(TRIM_FADE_FRAMES);
+    }
+
+    /**
+     * Drops everything queued, the stream goes silent on the next block.
+     */
+    public synchronized void clear()
+    {
+        readFrame = writeFrame;
+    }
+
+    /**
+     * Mixes the next queued frames into the engine's mix buffer, called from the render thread.
+     *
+     * @param mixBuffer Interleaved stereo samples to add to
+     */
+    public synchronized void mixInto(int[] mixBuffer)
+    {
+        int frames = (int) Math.min(mixBuffer.length / CHANNELS, writeFrame - readFrame);
+        float currentGain = gain;
+
+        for (int frame = 0; frame < frames; frame++)
+        {
+            int position = (int) ((readFrame + frame) % capacityFrames) * FRAME_SIZE;
+
+            for (int channel = 0; channel < CHANNELS; channel++)
+            {
+                int index = position + channel * 2;
+                int sample = (short) ((ring[index + 1] << 8) | (ring[index] & 0xff));
+                mixBuffer[frame * CHANNELS + channel] += (int) (sample * currentGain);
+            }
+        }
+
+        readFrame += frames;
+    }
+
+    private void write(byte[] data, int offsetFrames, int frames)
+    {
+        // Copy in up to two pieces, one up to the end of the ring and one wrapped around to the start
+        int ringFrame = (int) (writeFrame % capacityFrames);
+        int firstFrames = Math.min(frames, capacityFrames - ringFrame);
+
+        System.arraycopy(data, offsetFrames * FRAME_SIZE, ring, ringFrame * FRAME_SIZE, firstFrames * FRAME_SIZE);
+        System.arraycopy(data, (offsetFrames + firstFrames) * FRAME_SIZE, ring, 0, (frames - firstFrames) * FRAME_SIZE);
+
+        writeFrame += frames;
+    }
+
+    /**
+     * Adds audio on top of what's already written in the ring, starting at the given frame.
+     */
+    private void mixAt(byte[] data, long startFrame, int frames)
+    {
+        for (int frame = 0; frame < frames; frame++)
+        {
+            int position = (int) ((startFrame + frame) % capacityFrames) * FRAME_SIZE;
+
+            for (int i = 0; i < FRAME_SIZE; i += 2)
+            {
+                int existing = (short) ((ring[position + i + 1] << 8) | (ring[position + i] & 0xff));
+                int added = (short) ((data[frame * FRAME_SIZE + i + 1] << 8) | (data[frame * FRAME_SIZE + i] & 0xff));
+                int sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, existing + added));
+
+                ring[position + i] = (byte) sample;
+                ring[position + i + 1] = (byte) (sample >> 8);
+            }
+        }
+    }
+
+    /**
+     * Fades the last queued frames down to silence, so audio that's cut short doesn't click.
+     */
+    private void fadeOutEnd(int frames)
+    {
+        frames = (int) Math.min(frames, writeFrame - readFrame);
+        long startFrame = writeFrame - frames;
+
+        for (int frame = 0; frame < frames; frame++)
+        {
+            int position = (int) ((startFrame + frame) % capacityFrames) * FRAME_SIZE;
+            float fade = 1f - (float) (frame + 1) / frames;
+
+            for (int i = 0; i < FRAME_SIZE; i += 2)
+            {
+                int sample = (short) ((ring[position + i + 1] << 8) | (ring[position + i] & 0xff));
+                sample = (int) (sample * fade);
+
+                ring[position + i] = (byte) sample;
+                ring[position + i + 1] = (byte) (sample >> 8);
+            }
+        }
+    }
+
+    private void writeSilence(int frames)
+    {
+        for (int frame = 0; frame < frames; frame++)
+        {
+            int position = (int) ((writeFrame + frame) % capacityFrames) * FRAME_SIZE;
+            for (int i = 0; i < FRAME_SIZE; i++)
+            {
+                ring[position + i] = 0;
+            }
+        }
+        writeFrame += frames;
+    }
+}
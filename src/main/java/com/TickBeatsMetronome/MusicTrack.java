@@ -46,6 +46,12 @@ public class MusicTrack
         this.displayName = displayName;
         this.beats = beats;
         this.format = format;
+
+        // Let every beat know which track it's from, so beats from different tracks are never treated as adjacent
+        for (MusicBeat beat : beats)
+        {
+            beat.setTrack(this);
+        }
     }
 
     /** @return The total number of full bars in the track. */
@@ -28,6 +28,9 @@ public class MusicTrackLoader
 
     private static final float BEAT_DURATION_SECONDS = 0.6f;
 
+    // How long the crossfade is where two beats that don't follow each other in the track get spliced together
+    private static final float CROSSFADE_SECONDS = 0.01f;
+
     /**
      * Loads a music track either from embedded plugin resources or from user-supplied files.
      * The track is split into 600ms segments.
@@ -81,14 +84,34 @@ public class MusicTrackLoader
                 return null;
             }
 
+            // Convert the track to the audio engine format so its beats can be mixed without any conversion at play time
+            // If it can't be converted it keeps its own format and its beats are played with Clips instead of the engine
+            AudioInputStream pcmStream = stream;
+            if (!format.matches(AudioEngine.FORMAT))
+            {
+                if (AudioSystem.isConversionSupported(AudioEngine.FORMAT, format))
+                {
+                    pcmStream = AudioSystem.getAudioInputStream(AudioEngine.FORMAT, stream);
+                    format = AudioEngine.FORMAT;
+                }
+                else
+                {
+                    log.debug("Track '{}' can't be converted from {}, playing it with Clips", resourceName, format);
+                }
+            }
+
             // Calculate audio segment (beat) size in bytes based on duration and format
             int frameSize = format.getFrameSize();                  // e.g., 4 bytes for 16-bit stereo
             float frameRate = format.getFrameRate();                // e.g., 44100 Hz
             int framesPerBeat = (int)(frameRate * BEAT_DURATION_SECONDS);  // e.g., 44100 * 0.6 = 26460 frames per beat
             int bytesPerBeat = framesPerBeat * frameSize;           // e.g., 26460 * 4 = 105840 bytes per beat
+            int crossfadeBytes = (int)(frameRate * CROSSFADE_SECONDS) * frameSize; // e.g., 441 * 4 = 1764 bytes
+
+            // The crossfade ramps can only be baked for audio in the engine format (16-bit little-endian)
+            boolean bakeCrossfades = format.matches(AudioEngine.FORMAT);
 
             // Read the entire audio file into memory
-            byte[] fullAudio = stream.readAllBytes();
+            byte[] fullAudio = pcmStream.readAllBytes();
             int totalBeats = fullAudio.length / bytesPerBeat;       // Determine how many full 600ms beats exist
 
             // List to store beat objects for this track
@@ -108,8 +131,23 @@ public class MusicTrackLoader
                 int barNumber = (i / MusicTrack.BEATS_PER_BAR) + 1;
                 int beatNumber = (i % MusicTrack.BEATS_PER_BAR) + 1;
 
+                // Bake the crossfade ramps for when the tick handlers splice this beat next to one it doesn't follow,
+                // doing it here keeps the play path from doing any extra work or allocating
+                byte[] fadeInHead = null;
+                byte[] fadeOutTail = null;
+                if (bakeCrossfades)
+                {
+                    fadeInHead = bakeRamp(fullAudio, start, crossfadeBytes, frameSize, true);
+
+                    // The tail is the natural continuation of this beat (the start of the next one), if the track has one
+                    if (end + crossfadeBytes <= fullAudio.length)
+                    {
+                        fadeOutTail = bakeRamp(fullAudio, end, crossfadeBytes, frameSize, false);
+                    }
+                }
+
                 // Add the beat to our list
-                beatList.add(new MusicBeat(barNumber, beatNumber, beatData));
+                beatList.add(new MusicBeat(barNumber, beatNumber, beatData, fadeInHead, fadeOutTail));
             }
 
             // Remove any leftover partial bar at the end (e.g., trailing silence)
@@ -192,6 +230,38 @@ public class MusicTrackLoader
         }
     }
 
+    /**
+     * Copies a short piece of 16-bit little-endian audio with an equal-power fade applied to it.
+     * A fade in and a fade out laid over each other keep the same loudness the whole way through the crossfade.
+     *
+     * @param audio     The full track audio
+     * @param offset    Byte offset to start copying from
+     * @param length    How many bytes to copy
+     * @param frameSize Bytes per frame, every channel in a frame gets the same gain
+     * @param fadeIn    true to ramp up from silence, false to ramp down to silence
+     * @return the faded copy
+     */
+    private static byte[] bakeRamp(byte[] audio, int offset, int length, int frameSize, boolean fadeIn)
+    {
+        byte[] ramp = new byte[length];
+        int frames = length / frameSize;
+
+        for (int i = 0; i < length; i += 2)
+        {
+            // How far through the ramp this sample is (0 to 1)
+            double progress = (double) (i / frameSize) / frames;
+            double gain = fadeIn ? Math.sin(progress * Math.PI / 2) : Math.cos(progress * Math.PI / 2);
+
+            int sample = (short) ((audio[offset + i + 1] << 8) | (audio[offset + i] & 0xff));
+            sample = (int) Math.round(sample * gain);
+
+            ramp[i] = (byte) sample;
+            ramp[i + 1] = (byte) (sample >> 8);
+        }
+
+        return ramp;
+    }
+
     /**
      * Removes any trailing beats that do not form a complete musical bar.
      *
@@ -16,9 +16,6 @@ public class OverlayColor extends Overlay {
     @Inject
     TickBeatsMetronomePlugin plugin;
 
-    @Inject
-    TickBeatsMetronomeConfig config;
-
     @Inject
     private OverlayColor() {
         setPosition(OverlayPosition.DYNAMIC);
@@ -27,62 +24,19 @@ public class OverlayColor extends Overlay {
 
     @Override
     public Dimension render(Graphics2D graphics) {
-        if (!config.enableColorOverlay()) {
+        // Everything for this tick was worked out when the tick changed
+        TickRenderModel model = plugin.getRenderModel();
+        if (model == null || !model.isShowColorOverlay()) {
             return null;
         }
 
-        // Get the appropriate color and opacity based on the current beat and tick count
-        Color tickColor;
-        float opacity;
-        
-        if (plugin.beatNumber == 1) {
-            switch (plugin.tickCount) {
-                case 1: tickColor = config.beat1Tick1Color(); opacity = config.beat1Tick1Opacity() / 100f; break;
-                case 2: tickColor = config.beat1Tick2Color(); opacity = config.beat1Tick2Opacity() / 100f; break;
-                case 3: tickColor = config.beat1Tick3Color(); opacity = config.beat1Tick3Opacity() / 100f; break;
-                case 4: tickColor = config.beat1Tick4Color(); opacity = config.beat1Tick4Opacity() / 100f; break;
-                case 5: tickColor = config.beat1Tick5Color(); opacity = config.beat1Tick5Opacity() / 100f; break;
-                case 6: tickColor = config.beat1Tick6Color(); opacity = config.beat1Tick6Opacity() / 100f; break;
-                case 7: tickColor = config.beat1Tick7Color(); opacity = config.beat1Tick7Opacity() / 100f; break;
-                case 8: tickColor = config.beat1Tick8Color(); opacity = config.beat1Tick8Opacity() / 100f; break;
-                case 9: tickColor = config.beat1Tick9Color(); opacity = config.beat1Tick9Opacity() / 100f; break;
-                default: tickColor = Color.WHITE; opacity = 0f; break;
-            }
-        } else if (plugin.beatNumber == 2) {
-            switch (plugin.tickCount) {
-                case 1: tickColor = config.beat2Tick1Color(); opacity = config.beat2Tick1Opacity() / 100f; break;
-                case 2: tickColor = config.beat2Tick2Color(); opacity = config.beat2Tick2Opacity() / 100f; break;
-                case 3: tickColor = config.beat2Tick3Color(); opacity = config.beat2Tick3Opacity() / 100f; break;
-                case 4: tickColor = config.beat2Tick4Color(); opacity = config.beat2Tick4Opacity() / 100f; break;
-                case 5: tickColor = config.beat2Tick5Color(); opacity = config.beat2Tick5Opacity() / 100f; break;
-                case 6: tickColor = config.beat2Tick6Color(); opacity = config.beat2Tick6Opacity() / 100f; break;
-                case 7: tickColor = config.beat2Tick7Color(); opacity = config.beat2Tick7Opacity() / 100f; break;
-                case 8: tickColor = config.beat2Tick8Color(); opacity = config.beat2Tick8Opacity() / 100f; break;
-                case 9: tickColor = config.beat2Tick9Color(); opacity = config.beat2Tick9Opacity() / 100f; break;
-                default: tickColor = Color.WHITE; opacity = 0f; break;
-            }
-        } else {
-            switch (plugin.tickCount) {
-                case 1: tickColor = config.beat3Tick1Color(); opacity = config.beat3Tick1Opacity() / 100f; break;
-                case 2: tickColor = config.beat3Tick2Color(); opacity = config.beat3Tick2Opacity() / 100f; break;
-                case 3: tickColor = config.beat3Tick3Color(); opacity = config.beat3Tick3Opacity() / 100f; break;
-                case 4: tickColor = config.beat3Tick4Color(); opacity = config.beat3Tick4Opacity() / 100f; break;
-                case 5: tickColor = config.beat3Tick5Color(); opacity = config.beat3Tick5Opacity() / 100f; break;
-                case 6: tickColor = config.beat3Tick6Color(); opacity = config.beat3Tick6Opacity() / 100f; break;
-                case 7: tickColor = config.beat3Tick7Color(); opacity = config.beat3Tick7Opacity() / 100f; break;
-                case 8: tickColor = config.beat3Tick8Color(); opacity = config.beat3Tick8Opacity() / 100f; break;
-                case 9: tickColor = config.beat3Tick9Color(); opacity = config.beat3Tick9Opacity() / 100f; break;
-                default: tickColor = Color.WHITE; opacity = 0f; break;
-            }
-        }
+        // Get the color with its opacity already applied for the current beat and tick count, faded if fading is on
+        Color overlayColor = model.getOverlayColor(System.nanoTime());
 
-        // Create a new color with the configured opacity
-        Color overlayColor = new Color(
-            tickColor.getRed(),
-            tickColor.getGreen(),
-            tickColor.getBlue(),
-            Math.round(opacity * 255)
-        );
+        // Nothing to see, don't fill the whole canvas for it
+        if (overlayColor.getAlpha() == 0) {
+            return null;
+        }
 
         // Fill the entire canvas with the color
         graphics.setColor(overlayColor);
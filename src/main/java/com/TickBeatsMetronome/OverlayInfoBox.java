@@ -9,6 +9,7 @@ import net.runelite.client.ui.overlay.components.TitleComponent;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.awt.*;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Singleton
@@ -17,17 +18,29 @@ public class OverlayInfoBox extends Overlay
     @Inject
     TickBeatsMetronomePlugin plugin;
 
-    @Inject
-    TickBeatsMetronomeConfig config;
-
     @Inject
     DownloadManager downloadManager;
 
     @Inject
-    MusicManager musicManager;
+    AudioEngine audioEngine;
+
+    // The latency estimate moves a little on nearly every line write, it's only shown again once it's moved this far
+    private static final long LATENCY_CHANGE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
 
     private final PanelComponent panel = new PanelComponent();
 
+    // Everything the box was last built from, the components are only built again when one of these changes
+    private TickRenderModel shownModel;
+    private boolean shownAudioRunning;
+    private long shownLatencyNanos;
+    private long shownOffsetNanos;
+    private long shownTimingSamples;
+    private int shownTotalBuiltinCount;
+    private int shownDownloadedCountLo;
+    private int shownDownloadedCountHi;
+    private boolean shownAllLoDownloaded;
+    private boolean shownAllHiDownloaded;
+
     @Inject
     public OverlayInfoBox()
     {
@@ -38,9 +51,84 @@ public class OverlayInfoBox extends Overlay
     @Override
     public Dimension render(Graphics2D graphics)
     {
+        // Everything for this tick was worked out when the tick changed
+        TickRenderModel model = plugin.getRenderModel();
+
         // Only show this info box if the setting is enabled by the user
-        if (!config.showInfoBox()) return null;
+        if (model == null || !model.isShowInfoBox()) return null;
+
+        // Nothing in the box changes between ticks most of the time, so keep drawing the components from last time
+        if (hasChanged(model))
+        {
+            rebuild(model);
+        }
+
+        return panel.render(graphics);
+    }
 
+    /**
+     * Compares what the box would show now to what it was last built from, and remembers the new values.
+     *
+     * @return true if anything shown in the box has changed since it was last built
+     */
+    private boolean hasChanged(TickRenderModel model)
+    {
+        boolean audioRunning = audioEngine.isRunning();
+        long latencyNanos = audioEngine.getOutputLatencyNanos();
+        long offsetNanos = plugin.audioOffsetNanos;
+
+        // The stats change whenever another tick is counted
+        long timingSamples = -1;
+        LocalTickManager localTickManager = plugin.getLocalTickManager();
+        if (model.isShowTickTimingStats() && localTickManager != null)
+        {
+            timingSamples = localTickManager.getGameTickIntervals().getCount()
+                    + localTickManager.getLocalTickIntervals().getCount()
+                    + localTickManager.getPhaseErrors().getCount();
+        }
+
+        int totalBuiltinCount = downloadManager.getTotalBuiltinCount();
+        int downloadedCountLo = downloadManager.getDownloadedCountLo();
+        int downloadedCountHi = downloadManager.getDownloadedCountHi();
+        boolean allLoDownloaded = downloadManager.isAllLoDownloaded();
+        boolean allHiDownloaded = downloadManager.isAllHiDownloaded();
+
+        boolean changed = model != shownModel
+                || audioRunning != shownAudioRunning
+                || Math.abs(latencyNanos - shownLatencyNanos) >= LATENCY_CHANGE_NANOS
+                || Math.abs(offsetNanos - shownOffsetNanos) >= LATENCY_CHANGE_NANOS
+                || timingSamples != shownTimingSamples
+                || totalBuiltinCount != shownTotalBuiltinCount
+                || downloadedCountLo != shownDownloadedCountLo
+                || downloadedCountHi != shownDownloadedCountHi
+                || allLoDownloaded != shownAllLoDownloaded
+                || allHiDownloaded != shownAllHiDownloaded;
+
+        // Only remember the values the box is built from, or the latency could creep by less than the threshold forever
+        if (!changed)
+        {
+            return false;
+        }
+
+        shownModel = model;
+        shownAudioRunning = audioRunning;
+        shownLatencyNanos = latencyNanos;
+        shownOffsetNanos = offsetNanos;
+        shownTimingSamples = timingSamples;
+        shownTotalBuiltinCount = totalBuiltinCount;
+        shownDownloadedCountLo = downloadedCountLo;
+        shownDownloadedCountHi = downloadedCountHi;
+        shownAllLoDownloaded = allLoDownloaded;
+        shownAllHiDownloaded = allHiDownloaded;
+
+        return true;
+    }
+
+    /**
+     * Builds the box's components from scratch, from the values hasChanged() just remembered.
+     */
+    private void rebuild(TickRenderModel model)
+    {
         // Clear out old values
         panel.getChildren().clear();
 
@@ -54,19 +142,15 @@ public class OverlayInfoBox extends Overlay
                 .build());
 
         // Add playback mode info
-        // Make Playback Mode string lowercase with space instead of underscore
-        String modeDisplayString = config.playbackMode().toString().toLowerCase().replace('_', ' ');
-        // Then capitalize the first letter
-        modeDisplayString = modeDisplayString.substring(0,1).toUpperCase() + modeDisplayString.substring(1);
         panel.getChildren().add(TitleComponent.builder()
-                .text(modeDisplayString)
+                .text(model.getModeLabel())
                 .color(Color.cyan)
                 .build());
 
         // Add Song Name if it exists
-        if(musicManager.getCurrentTrack() != null){
+        if(model.getSongName() != null){
             // Get the song name to display
-            String songName = musicManager.getCurrentTrack().getDisplayName();
+            String songName = model.getSongName();
 
             panel.getChildren().add(TitleComponent.builder()
                     .text(songName)
@@ -77,20 +161,54 @@ public class OverlayInfoBox extends Overlay
         // Add beat number info
         panel.getChildren().add(LineComponent.builder()
                 .left("Beat:")
-                .right(plugin.beatNumber + " / " + config.enabledBeats())
+                .right(model.getBeatLabel())
                 .build());
 
         // Add tick number info
         panel.getChildren().add(LineComponent.builder()
                 .left("Tick:")
-                .right(plugin.tickCount + " / " + plugin.maxTicks)
+                .right(model.getTickLabel())
                 .build());
 
+        // Add the measured audio output latency and how far ahead of the tick audio is started to make up for it
+        if (shownAudioRunning)
+        {
+            panel.getChildren().add(LineComponent.builder()
+                    .left("Audio Latency:")
+                    .right(TimeUnit.NANOSECONDS.toMillis(shownLatencyNanos) + " ms")
+                    .build());
+
+            panel.getChildren().add(LineComponent.builder()
+                    .left("Audio Offset:")
+                    .right(TimeUnit.NANOSECONDS.toMillis(shownOffsetNanos) + " ms")
+                    .build());
+        }
+
+        // Add the tick timing stats (p50 / p99 / max) if the debug setting is on
+        LocalTickManager localTickManager = plugin.getLocalTickManager();
+        if (model.isShowTickTimingStats() && localTickManager != null)
+        {
+            panel.getChildren().add(LineComponent.builder()
+                    .left("Game Δ:")
+                    .right(localTickManager.getGameTickIntervals().getSummary())
+                    .build());
+
+            panel.getChildren().add(LineComponent.builder()
+                    .left("Local Δ:")
+                    .right(localTickManager.getLocalTickIntervals().getSummary())
+                    .build());
+
+            panel.getChildren().add(LineComponent.builder()
+                    .left("Phase Err:")
+                    .right(localTickManager.getPhaseErrors().getSummary())
+                    .build());
+        }
+
         // --- Download progress ---
-        final int totalBuiltinTracksCount = downloadManager.getTotalBuiltinCount();
+        final int totalBuiltinTracksCount = shownTotalBuiltinCount;
 
         // Only display download status for low quality tracks if all low downloads aren't done yet
-        if(!downloadManager.isAllLoDownloaded() && totalBuiltinTracksCount > 0){
+        if(!shownAllLoDownloaded && totalBuiltinTracksCount > 0){
 
             // Resize the info box to fit the longer text
             panel.setPreferredSize(new Dimension(200, 0));
@@ -98,12 +216,12 @@ public class OverlayInfoBox extends Overlay
             // Add the download status for low quality tracks info to the box
             panel.getChildren().add(LineComponent.builder()
                     .left("Downloading Music...")
-                    .right( downloadManager.getDownloadedCountLo() + " / " + totalBuiltinTracksCount)
+                    .right(shownDownloadedCountLo + " / " + totalBuiltinTracksCount)
                     .build());
         }
 
         // If the user wants to use hi quality music and all the high quality music tracks aren't downloaded yet
-        if(config.useHighQualityMusic() && !downloadManager.isAllHiDownloaded() && totalBuiltinTracksCount > 0){
+        if(model.isUseHighQualityMusic() && !shownAllHiDownloaded && totalBuiltinTracksCount > 0){
 
             // Resize the info box to fit the longer text
             panel.setPreferredSize(new Dimension(250, 0));
@@ -111,10 +229,8 @@ public class OverlayInfoBox extends Overlay
             // Add the download status for high quality tracks info to the box
             panel.getChildren().add(LineComponent.builder()
                     .left("Downloading High Quality Music...")
-                    .right(downloadManager.getDownloadedCountHi() + " / " + totalBuiltinTracksCount)
+                    .right(shownDownloadedCountHi + " / " + totalBuiltinTracksCount)
                     .build());
         }
-
-        return panel.render(graphics);
     }
 }
\ No newline at end of file
@@ -24,7 +24,7 @@ public class OverlayOverheadNumber extends Overlay
     TickBeatsMetronomePlugin plugin;
 
     @Inject
-    TickBeatsMetronomeConfig config;
+    TickNumberSprites tickNumberSprites;
 
     @Inject
     public OverlayOverheadNumber()
@@ -40,8 +40,11 @@ public class OverlayOverheadNumber extends Overlay
     public Dimension render(Graphics2D graphics)
     {
 
+        // Everything for this tick was worked out when the tick changed
+        TickRenderModel model = plugin.getRenderModel();
+
         //if the visual metronome is turned off, don't draw it to the screen
-        if (!config.enableTextMetronome()){
+        if (model == null || !model.isShowOverheadNumber()){
             return null;
         }
 
@@ -53,10 +56,10 @@ public class OverlayOverheadNumber extends Overlay
         }
 
         // Get the current tick number
-        String tickText = String.valueOf(plugin.tickCount);
+        String tickText = model.getTickText();
 
         // Determine where to draw the text
-        int zOffset = config.textVerticalOffset(); // Get absolute value for the initial calculation
+        int zOffset = model.getTextVerticalOffset(); // Get absolute value for the initial calculation
         Point textLocation = player.getCanvasTextLocation(graphics, tickText, zOffset);
         if (textLocation == null)
         {
@@ -64,73 +67,8 @@ public class OverlayOverheadNumber extends Overlay
             return null; // Couldn't calculate a position
         }
 
-        // Set font from config
-        graphics.setFont(new Font("Arial", Font.BOLD, config.fontSize()));
-
-        //get the width of text so that it can be centered
-        FontMetrics metrics = graphics.getFontMetrics();
-        int textWidth = metrics.stringWidth(tickText);
-
-        //place the text on the screen
-        int x = textLocation.getX() - (textWidth / 2);
-        int y = textLocation.getY();
-        
-
-
-        // Draw black outline around text (offset by 1 pixel in each direction)
-        graphics.setColor(Color.BLACK);
-        graphics.drawString(tickText, x + 1, y);
-        graphics.drawString(tickText, x - 1, y);
-        graphics.drawString(tickText, x, y + 1);
-        graphics.drawString(tickText, x, y - 1);
-
-        // Get the appropriate color based on current beat and tick
-        Color textColor;
-        if (plugin.beatNumber == 1) {
-            switch (plugin.tickCount) {
-                case 1: textColor = config.beat1Tick1Color(); break;
-                case 2: textColor = config.beat1Tick2Color(); break;
-                case 3: textColor = config.beat1Tick3Color(); break;
-                case 4: textColor = config.beat1Tick4Color(); break;
-                case 5: textColor = config.beat1Tick5Color(); break;
-                case 6: textColor = config.beat1Tick6Color(); break;
-                case 7: textColor = config.beat1Tick7Color(); break;
-                case 8: textColor = config.beat1Tick8Color(); break;
-                case 9: textColor = config.beat1Tick9Color(); break;
-                default: textColor = Color.WHITE; break;
-            }
-        } else if (plugin.beatNumber == 2) {
-            switch (plugin.tickCount) {
-                case 1: textColor = config.beat2Tick1Color(); break;
-                case 2: textColor = config.beat2Tick2Color(); break;
-                case 3: textColor = config.beat2Tick3Color(); break;
-                case 4: textColor = config.beat2Tick4Color(); break;
-                case 5: textColor = config.beat2Tick5Color(); break;
-                case 6: textColor = config.beat2Tick6Color(); break;
-                case 7: textColor = config.beat2Tick7Color(); break;
-                case 8: textColor = config.beat2Tick8Color(); break;
-                case 9: textColor = config.beat2Tick9Color(); break;
-                default: textColor = Color.WHITE; break;
-            }
-        } else {
-            switch (plugin.tickCount) {
-                case 1: textColor = config.beat3Tick1Color(); break;
-                case 2: textColor = config.beat3Tick2Color(); break;
-                case 3: textColor = config.beat3Tick3Color(); break;
-                case 4: textColor = config.beat3Tick4Color(); break;
-                case 5: textColor = config.beat3Tick5Color(); break;
-                case 6: textColor = config.beat3Tick6Color(); break;
-                case 7: textColor = config.beat3Tick7Color(); break;
-                case 8: textColor = config.beat3Tick8Color(); break;
-                case 9: textColor = config.beat3Tick9Color(); break;
-                default: textColor = Color.WHITE; break;
-            }
-        }
-
-        // Draw text in tick-specific color
-        graphics.setColor(textColor);
-        graphics.drawString(tickText, x, y);
-
+        // Draw the outlined number from its pre-rendered sprite, centered the same as the text used to be
+        tickNumberSprites.draw(graphics, model, textLocation.getX(), textLocation.getY());
 
         return null;
     }
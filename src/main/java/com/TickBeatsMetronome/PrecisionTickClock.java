@@ -0,0 +1,234 @@
+package com.TickBeatsMetronome;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * PrecisionTickClock is a {@link TickClock} that runs its tasks on its own max priority thread and, in precise mode,
+ * fires them within tens of microseconds of their deadline.
+ *
+ * Sleeping (a scheduled executor, or parking) can wake up a millisecond or more late depending on the OS timer.
+ * In precise mode the thread parks until shortly before the deadline, then spin waits the last stretch.
+ * The spin window follows how late parking has actually been waking up, so a machine with a good timer barely spins,
+ * and it's capped at {@link #MAX_SPIN_NANOS} so CPU use stays bounded (at most a few ms per 600ms tick).
+ * With precise mode off it just parks until the deadline, the same as a scheduled executor.
+ */
+@Slf4j
+public class PrecisionTickClock implements TickClock
+{
+    // Limits on how long to spin before a deadline
+    private static final long MIN_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long MAX_SPIN_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    // Spin a bit longer than the latest wakeup seen, so an average wakeup lands well inside the window
+    private static final long SPIN_MARGIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    // How quickly the spin window shrinks back down when wakeups are on time (1/16 of the difference per wakeup)
+    private static final int SPIN_DECAY = 16;
+
+    private final PriorityQueue<PreciseTask> tasks = new PriorityQueue<>();
+
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private volatile boolean precise = false;
+
+    // How long before a deadline to stop parking and start spinning
+    private volatile long spinWindowNanos = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // Breaks ties between tasks due at the same time
+    private long scheduledCount = 0;
+
+    public PrecisionTickClock()
+    {
+        thread = new Thread(this::run, "Tick Beats Local Ticks");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * @param precise true to spin wait the last stretch before each deadline, false to just park until it
+     */
+    public void setPrecise(boolean precise)
+    {
+        this.precise = precise;
+    }
+
+    /**
+     * @return How long before each deadline the thread currently starts spinning
+     */
+    public long getSpinWindowNanos()
+    {
+        return spinWindowNanos;
+    }
+
+    @Override
+    public long nanoTime()
+    {
+        return System.nanoTime();
+    }
+
+    @Override
+    public Task schedule(Runnable task, long deadlineNanos)
+    {
+        PreciseTask preciseTask;
+        synchronized (tasks)
+        {
+            preciseTask = new PreciseTask(task, deadlineNanos, scheduledCount++);
+            tasks.add(preciseTask);
+        }
+
+        // Wake the thread so it parks for the right amount if this task is now the earliest
+        LockSupport.unpark(thread);
+        return preciseTask;
+    }
+
+    @Override
+    public void shutdown()
+    {
+        running = false;
+        synchronized (tasks)
+        {
+            tasks.clear();
+        }
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Waits for and runs tasks in deadline order until shut down.
+     */
+    private void run()
+    {
+        while (running)
+        {
+            PreciseTask next;
+            synchronized (tasks)
+            {
+                next = tasks.peek();
+            }
+
+            if (next == null)
+            {
+                LockSupport.park(this);
+                continue;
+            }
+
+            long remainingNanos = next.deadlineNanos - System.nanoTime();
+            long spinNanos = precise ? spinWindowNanos : 0;
+
+            if (next.cancelled)
+            {
+                remove(next);
+                continue;
+            }
+
+            // Park until the spin window, then look again in case an earlier task came in or this one was cancelled
+            if (remainingNanos > spinNanos)
+            {
+                long parkNanos = remainingNanos - spinNanos;
+                long parkStartNanos = System.nanoTime();
+                LockSupport.parkNanos(this, parkNanos);
+
+                // Only a full length park says anything about wakeup lateness, an unpark or a spurious wakeup returns early
+                long latenessNanos = System.nanoTime() - parkStartNanos - parkNanos;
+                if (precise && latenessNanos >= 0)
+                {
+                    adaptSpinWindow(latenessNanos);
+                }
+                continue;
+            }
+
+            // Spin the last stretch
+            while (running && !next.cancelled && System.nanoTime() - next.deadlineNanos < 0)
+            {
+                Thread.onSpinWait();
+            }
+
+            // Run whatever is due first, which is normally the task just waited for
+            PreciseTask due;
+            synchronized (tasks)
+            {
+                due = tasks.peek();
+                if (due == null || due.deadlineNanos - System.nanoTime() > 0)
+                {
+                    continue;
+                }
+                tasks.poll();
+            }
+
+            if (due.cancelled || !running)
+            {
+                continue;
+            }
+
+            try
+            {
+                due.runnable.run();
+            }
+            catch (Exception e)
+            {
+                log.debug("Local tick task failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Grows the spin window straight away when a wakeup is later than it covers, shrinks it slowly when they're early.
+     */
+    private void adaptSpinWindow(long latenessNanos)
+    {
+        long wantedNanos = latenessNanos + latenessNanos / 2 + SPIN_MARGIN_NANOS;
+        long window = spinWindowNanos;
+
+        if (wantedNanos > window)
+        {
+            window = wantedNanos;
+        }
+        else
+        {
+            window -= (window - wantedNanos) / SPIN_DECAY;
+        }
+
+        spinWindowNanos = Math.max(MIN_SPIN_NANOS, Math.min(MAX_SPIN_NANOS, window));
+    }
+
+    private void remove(PreciseTask task)
+    {
+        synchronized (tasks)
+        {
+            tasks.remove(task);
+        }
+    }
+
+    private static class PreciseTask implements Task, Comparable<PreciseTask>
+    {
+        private final Runnable runnable;
+        private final long deadlineNanos;
+        private final long order;
+        private volatile boolean cancelled = false;
+
+        private PreciseTask(Runnable runnable, long deadlineNanos, long order)
+        {
+            this.runnable = runnable;
+            this.deadlineNanos = deadlineNanos;
+            this.order = order;
+        }
+
+        @Override
+        public void cancel()
+        {
+            cancelled = true;
+        }
+
+        @Override
+        public int compareTo(PreciseTask other)
+        {
+            int byDeadline = Long.compare(deadlineNanos, other.deadlineNanos);
+            return byDeadline != 0 ? byDeadline : Long.compare(order, other.order);
+        }
+    }
+}
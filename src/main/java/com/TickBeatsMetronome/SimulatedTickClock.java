@@ -0,0 +1,121 @@
+package com.TickBeatsMetronome;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link TickClock} where time only moves when {@link #advanceTo} or {@link #advanceBy} is called,
+ * for replaying hours of tick timing in milliseconds with exactly the same result every run.
+ *
+ * Scheduled tasks run on the thread that advances the clock, in deadline order (tasks due at the same time run in
+ * the order they were scheduled), and the clock reads exactly the task's deadline while it runs.
+ * Tasks scheduled while advancing run in the same advance if they're due by then.
+ *
+ * Time starts at 1 second rather than 0 since LocalTickManager treats a time of 0 as "hasn't happened yet".
+ */
+public class SimulatedTickClock implements TickClock
+{
+    private static final long START_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final PriorityQueue<SimulatedTask> tasks = new PriorityQueue<>();
+
+    private long nowNanos = START_NANOS;
+
+    // Breaks ties between tasks due at the same time
+    private long scheduledCount = 0;
+
+    @Override
+    public long nanoTime()
+    {
+        return nowNanos;
+    }
+
+    @Override
+    public Task schedule(Runnable task, long deadlineNanos)
+    {
+        // Like the real executor, a deadline that's already passed runs as soon as possible rather than in the past
+        SimulatedTask simulatedTask = new SimulatedTask(task, Math.max(deadlineNanos, nowNanos), scheduledCount++);
+        tasks.add(simulatedTask);
+        return simulatedTask;
+    }
+
+    @Override
+    public void shutdown()
+    {
+        tasks.clear();
+    }
+
+    /**
+     * Moves time forward, running every task due on the way.
+     *
+     * @param timeNanos The time to stop at, times before now are ignored
+     */
+    public void advanceTo(long timeNanos)
+    {
+        while (!tasks.isEmpty() && tasks.peek().deadlineNanos <= timeNanos)
+        {
+            SimulatedTask task = tasks.poll();
+            if (task.cancelled)
+            {
+                continue;
+            }
+
+            nowNanos = task.deadlineNanos;
+            task.runnable.run();
+        }
+
+        nowNanos = Math.max(nowNanos, timeNanos);
+    }
+
+    /**
+     * Moves time forward by the given amount, running every task due on the way.
+     */
+    public void advanceBy(long nanos)
+    {
+        advanceTo(nowNanos + nanos);
+    }
+
+    /**
+     * @return How many tasks are scheduled and not cancelled
+     */
+    public int getPendingTaskCount()
+    {
+        int count = 0;
+        for (SimulatedTask task : tasks)
+        {
+            if (!task.cancelled)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static class SimulatedTask implements Task, Comparable<SimulatedTask>
+    {
+        private final Runnable runnable;
+        private final long deadlineNanos;
+        private final long order;
+        private boolean cancelled = false;
+
+        private SimulatedTask(Runnable runnable, long deadlineNanos, long order)
+        {
+            this.runnable = runnable;
+            this.deadlineNanos = deadlineNanos;
+            this.order = order;
+        }
+
+        @Override
+        public void cancel()
+        {
+            cancelled = true;
+        }
+
+        @Override
+        public int compareTo(SimulatedTask other)
+        {
+            int byDeadline = Long.compare(deadlineNanos, other.deadlineNanos);
+            return byDeadline != 0 ? byDeadline : Long.compare(order, other.order);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.TickBeatsMetronome;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The real {@link TickClock}, System.nanoTime() (monotonic, unaffected by wall clock changes)
+ * with tasks run on a single background thread.
+ */
+public class SystemTickClock implements TickClock
+{
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    @Override
+    public long nanoTime()
+    {
+        return System.nanoTime();
+    }
+
+    @Override
+    public Task schedule(Runnable task, long deadlineNanos)
+    {
+        ScheduledFuture<?> future = executor.schedule(task, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        return () -> future.cancel(true);
+    }
+
+    @Override
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+}
@@ -80,6 +80,14 @@ public interface TickBeatsMetronomeConfig extends Config
 	)
 	default int startTick() { return 0; }
 
+	@ConfigItem(
+			keyName = "fadeColorOverlay",
+			name = "Fade Color Overlay",
+			description = "Fades the color overlay out over each tick so it pulses on the tick instead of staying solid",
+			position = 9
+	)
+	default boolean fadeColorOverlay() { return false; }
+
 	////////////////////////////////////////////////
 	/////////////////  Music Settings  /////////////
 	////////////////////////////////////////////////
@@ -1409,6 +1417,141 @@ public interface TickBeatsMetronomeConfig extends Config
 	)
 	default int beat3Tick9Opacity() { return 10; }
 
+	////////////////////////////////////////////////
+	///////////////  Audio Settings  ///////////////
+	////////////////////////////////////////////////
+
+	@ConfigSection(
+			name = "Audio Settings",
+			description = "Advanced settings for how sounds are played",
+			position = 22,
+			closedByDefault = true
+	)
+	String audioSettings = "audioSettings";
+
+	public enum AudioBackend
+	{
+		SOFTWARE_MIXER("Software Mixer"),
+		CLIP_POOL("Clip Pool"),
+		CLIP("Clip Per Tick");
+
+		private final String displayName;
+
+		AudioBackend(String displayName)
+		{
+			this.displayName = displayName;
+		}
+
+		@Override
+		public String toString()
+		{
+			return displayName;
+		}
+	}
+
+	@ConfigItem(
+			keyName = "audioBackend",
+			name = "Tick Sound Backend",
+			description = "Software Mixer mixes into one open output line, Clip Pool reuses already opened Clips, Clip Per Tick opens a new Clip every tick",
+			section = audioSettings,
+			position = 1
+	)
+	default AudioBackend audioBackend() { return AudioBackend.SOFTWARE_MIXER; }
+
+	@ConfigItem(
+			keyName = "sampleAccurateTicks",
+			name = "Sample Accurate Ticks",
+			description = "Software Mixer only. Places sounds on an exact grid based on the predicted tick time, steadier but adds a small fixed delay",
+			section = audioSettings,
+			position = 2
+	)
+	default boolean sampleAccurateTicks() { return false; }
+
+	@ConfigItem(
+			keyName = "streamMusic",
+			name = "Gapless Music",
+			description = "Software Mixer only. Streams music beats back to back through one output line instead of starting each beat on its own, adds a 50ms delay to music",
+			section = audioSettings,
+			position = 3
+	)
+	default boolean streamMusic() { return false; }
+
+	@ConfigItem(
+			keyName = "latencyCompensation",
+			name = "Latency Compensation",
+			description = "Software Mixer with Tick Smoothing only. Starts audio early by the measured output latency so it's heard on the tick instead of after it",
+			section = audioSettings,
+			position = 4
+	)
+	default boolean latencyCompensation() { return true; }
+
+	@Range(min = 1, max = AudioEngine.MAX_POLYPHONY)
+	@ConfigItem(
+			keyName = "maxPolyphony",
+			name = "Max Polyphony",
+			description = "How many sounds can play at once, when a new sound goes over this the oldest one is faded out",
+			section = audioSettings,
+			position = 5
+	)
+	default int maxPolyphony() { return 16; }
+
+	@ConfigItem(
+			keyName = "precisionTickTimer",
+			name = "Precision Tick Timer",
+			description = "Tick Smoothing only. Spins the CPU for the last moment before each local tick so it fires within microseconds of its time instead of whenever the OS timer wakes up, uses a little more CPU",
+			section = audioSettings,
+			position = 6
+	)
+	default boolean precisionTickTimer() { return false; }
+
+	@ConfigItem(
+			keyName = "preQueueTickSounds",
+			name = "Pre-queue Tick Sounds",
+			description = "Software Mixer with Tick Smoothing only. Queues each tick sound a whole tick ahead to be heard right at its predicted time, so timer and output delays aren't heard at all",
+			section = audioSettings,
+			position = 7
+	)
+	default boolean preQueueTickSounds() { return false; }
+
+	/////////////////////////////////////////////
+	//////////////  Debug Options  //////////////
+	/////////////////////////////////////////////
+
+	@ConfigSection(
+			name = "Debug",
+			description = "Timing stats for checking how steady ticks are",
+			position = 23,
+			closedByDefault = true
+	)
+	String debugSettings = "debugSettings";
+
+	@ConfigItem(
+			keyName = "showTickTimingStats",
+			name = "Show Tick Timing Stats",
+			description = "Adds game tick interval, local tick interval and local vs game tick phase error (p50 / p99 / max) to the Info Box",
+			section = debugSettings,
+			position = 1
+	)
+	default boolean showTickTimingStats() { return false; }
+
+	@ConfigItem(
+			keyName = "dumpTickTimingStats",
+			name = "Save Tick Timing Stats",
+			description = "Tick this to save the full tick timing histograms to .runelite/tick-beats/logs, it unticks itself once saved",
+			section = debugSettings,
+			position = 2
+	)
+	default boolean dumpTickTimingStats() { return false; }
+
+	@ConfigItem(
+			keyName = "recordTickTrace",
+			name = "Record Tick Trace",
+			description = "Records every game tick, local tick and tick sound time to .runelite/tick-beats/traces for replaying later",
+			section = debugSettings,
+			position = 3
+	)
+	default boolean recordTickTrace() { return false; }
+
 	/////////////////////////////////////////////
 	////////////  Playlist Options  /////////////
 	/////////////////////////////////////////////
@@ -6,17 +6,27 @@ import javax.inject.Inject;
 
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.*;
+import net.runelite.api.events.ClientTick;
 import net.runelite.api.events.GameStateChanged;
 import net.runelite.api.events.GameTick;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.EventBus;
 import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.RuneLite;
 import net.runelite.client.events.ConfigChanged;
 import net.runelite.client.input.KeyManager;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
 import net.runelite.client.ui.overlay.OverlayManager;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
 
 @Slf4j
 @PluginDescriptor(
@@ -29,6 +39,9 @@ import net.runelite.client.ui.overlay.OverlayManager;
 //extends Plugin makes this a singleton so @Singleton isn't used here
 public class TickBeatsMetronomePlugin extends Plugin {
 
+    // Where tick timing stats are saved to
+    private static final File TICK_TIMING_LOG_DIRECTORY = new File(RuneLite.RUNELITE_DIR, "tick-beats/logs");
+
     // Needed for Guice Dependency Injection
     @Inject
     private Client client;
@@ -39,6 +52,9 @@ public class TickBeatsMetronomePlugin extends Plugin {
     @Inject
     private EventBus eventBus;
 
+    @Inject
+    private ConfigManager configManager;
+
     @Inject
     private OverlayOverheadNumber overlayOverheadNumber;
 
@@ -63,9 +79,18 @@ public class TickBeatsMetronomePlugin extends Plugin {
     @Inject
     private TickSoundCache tickSoundCache;
 
+    @Inject
+    private TickSoundClipPool tickSoundClipPool;
+
     @Inject
     private TickSoundManager tickSoundManager;
 
+    @Inject
+    private AudioEngine audioEngine;
+
+    @Inject
+    private AudioThread audioThread;
+
     @Inject
     private UserSoundManager userSoundManager;
 
@@ -81,9 +106,21 @@ public class TickBeatsMetronomePlugin extends Plugin {
     @Inject
     private DownloadManager downloadManager;
 
+    @Inject
+    private TickTraceRecorder tickTraceRecorder;
+
+    @Inject
+    private TickPatternManager tickPatternManager;
+
+    @Inject
+    private TickNumberSprites tickNumberSprites;
+
     // Need to pass in local tick callback so don't inject this one
     private LocalTickManager localTickManager;
 
+    // What local ticks are timed with, kept so precise mode can be switched while running
+    private PrecisionTickClock tickClock;
+
     // Holds the tick count
     public int tickCount = 0;
 
@@ -93,12 +130,43 @@ public class TickBeatsMetronomePlugin extends Plugin {
     // Holds the max number of ticks for the current beat
     public int maxTicks = 1;
 
+    // How far ahead of the tick audio is being started to make up for output latency (shown in the info box)
+    public long audioOffsetNanos = 0;
+
+    // Set when the audio cue already played the upcoming local tick's audio, so the tick itself only advances the count
+    private volatile boolean tickAudioCued = false;
+
+    // Set when the upcoming local tick's sound was already queued in the audio engine, so it isn't played again
+    private volatile boolean tickSoundQueued = false;
+
+    // Reused for the predicted time of the next tick
+    private final long[] nextTickNanos = new long[1];
+
+    // Counts local ticks, a queued tick sound is tagged with the sequence number of the tick it's for
+    private long localTickSequence = 0;
+
+    // Which tick the queued sound is for and when it's predicted to happen, for retracting and requeueing it
+    private long queuedTickSequence = 0;
+    private long queuedTickNanos = 0;
+
+    // Local ticks and hotkeys both queue tick sounds, from different threads
+    private final Object tickSoundQueueLock = new Object();
+
+    // What the overlays draw, rebuilt whenever the tick, beat or a setting changes
+    private volatile TickRenderModel renderModel;
+
+    // The System.nanoTime() the tick being shown happened at, the color overlay fades from here
+    private volatile long lastTickNanos = 0;
+
     protected void startUp()
     {
         log.debug("Tick Beats Plugin started");
 
         tickCount = config.startTick();
 
+        // Read the beat/tick grid out of the config before anything plays or draws a tick
+        tickPatternManager.refresh();
+
         // Attach the overlays
         overlayManager.add(overlayOverheadNumber);
         overlayManager.add(overlayColor);
@@ -108,18 +176,37 @@ public class TickBeatsMetronomePlugin extends Plugin {
         // Register the key input listener
         keyManager.registerKeyListener(inputManager);
 
-        // Create the LocalTickManager and pass in the tick callback
-        localTickManager = new LocalTickManager(this::onLocalTick);
+        // Create the LocalTickManager on its own tick clock and pass in the tick callback
+        tickClock = new PrecisionTickClock();
+        tickClock.setPrecise(config.precisionTickTimer());
+        localTickManager = new LocalTickManager(tickClock, this::onLocalTick, this::onLocalAudioCue);
 
         // Register LocalTickManager so it gets onGameTick events
         eventBus.register(localTickManager);
 
+        // Start recording a tick trace if it's turned on
+        localTickManager.setTraceRecorder(tickTraceRecorder);
+        if (config.recordTickTrace())
+        {
+            tickTraceRecorder.start();
+        }
+
+        // Open the audio engine's output line, it stays open until shutdown
+        audioEngine.setMaxPolyphony(config.maxPolyphony());
+        audioEngine.start();
+
+        // Start the thread all tick sounds and music beats are played on
+        audioThread.start();
+
         // Load the user sound files
         userSoundManager.loadUserSounds();
 
         // Load All Tick Sounds Into Memory for quick playback
         tickSoundCache.cacheTickSounds();
 
+        // Build the pre-scaled copies of every sound and volume the beat settings use
+        tickSoundManager.refreshConfiguredVolumes();
+
         // Load list of user music files
         userMusicManager.loadUserMusic();
 
@@ -131,6 +218,9 @@ public class TickBeatsMetronomePlugin extends Plugin {
 
         // Get a music track ready to go on tick 1 (this should be called near or at the end)
         musicManager.prepMusicTrack();
+
+        // Give the overlays something to draw before the first tick
+        publishRenderModel();
     }
 
     @Override
@@ -152,12 +242,23 @@ public class TickBeatsMetronomePlugin extends Plugin {
             localTickManager.shutdown();
             eventBus.unregister(localTickManager);
             localTickManager = null;
+            tickClock = null;
         }
 
+        // Write out and close the tick trace
+        tickTraceRecorder.stop();
+
         if (downloadManager != null)
         {
             downloadManager.shutdown();
         }
+
+        // Stop the audio thread first so nothing is played while the Clips and output line are closing
+        audioThread.stop();
+
+        // Close any pooled Clips and the audio engine's output line
+        tickSoundClipPool.close();
+        audioEngine.stop();
     }
 
     @Subscribe
@@ -165,17 +266,37 @@ public class TickBeatsMetronomePlugin extends Plugin {
     {
         GameState state = event.getGameState();
 
-        // If the GameState event is login screen or world hopping reset the local tick manager
+        // If the GameState event is login screen or world hopping resync the local tick manager,
+        // ticks are the same length on every world so only where they land needs finding again
         if (state == GameState.LOGIN_SCREEN || state == GameState.HOPPING)
         {
-            log.debug("Player logged out or world hopping — resetting local tick manager.");
+            log.debug("Player logged out or world hopping — resyncing local tick manager.");
             if (localTickManager != null)
             {
-                localTickManager.reset();
+                localTickManager.resync();
+            }
+            tickAudioCued = false;
+
+            // The queued sound was for a tick on the old grid, it mustn't play after the hop
+            synchronized (tickSoundQueueLock)
+            {
+                retractQueuedTickSound();
             }
         }
     }
 
+    /**
+     * Fires on every client tick ~(20ms). Lets the local tick manager follow the client's game cycles.
+     */
+    @Subscribe
+    public void onClientTick(ClientTick tick)
+    {
+        if (localTickManager != null)
+        {
+            localTickManager.onGameCycle(client.getGameCycle());
+        }
+    }
+
     /**
      * Fires on every game tick ~(.6s). Updates the metronome tick count.
      */
@@ -183,10 +304,16 @@ public class TickBeatsMetronomePlugin extends Plugin {
     public void onGameTick(GameTick tick)
     {
         //nudge our local tick towards the game tick to be a near perfect average
-        localTickManager.updateLocalTick();
+        localTickManager.updateLocalTick(client.getGameCycle());
 
         if(!config.enableTickSmoothing()){
-            onTick();
+            // There's no predicted time for game ticks, they happen when they arrive.
+            // A sound queued before smoothing was turned off would play as well as this one, so pull it back
+            synchronized (tickSoundQueueLock)
+            {
+                retractQueuedTickSound();
+            }
+            onTick(System.nanoTime());
         }
     }
 
@@ -195,44 +322,237 @@ public class TickBeatsMetronomePlugin extends Plugin {
      */
     private void onLocalTick()
     {
+        boolean audioCued = tickAudioCued;
+        tickAudioCued = false;
+
         if(config.enableTickSmoothing()){
-            onTick();
+            // If the audio cue already started this tick's audio just advance the tick so the overlays change on time
+            if (audioCued)
+            {
+                if (!inputManager.resetActive)
+                {
+                    advanceTick();
+                    lastTickNanos = localTickManager.getTickDeadlineNanos();
+                    publishRenderModel();
+                }
+            }
+            else
+            {
+                onTick(localTickManager.getTickDeadlineNanos());
+            }
         }
+
+        // This tick's queued sound (if any) has been used, queue the next one
+        synchronized (tickSoundQueueLock)
+        {
+            localTickSequence++;
+            tickSoundQueued = false;
+            queueNextTickSound();
+        }
+
+        // Work out how early the next tick's audio needs to start
+        updateAudioOffset();
     }
-    
-    private void onTick(){
+
+    /**
+     * Queues the next local tick's sound in the audio engine at the tick's predicted time when pre-queueing is on,
+     * so it's heard right on the tick however late the tick thread or audio thread wakes up.
+     */
+    private void queueNextTickSound()
+    {
+        if (!canQueueTickSounds())
+        {
+            return;
+        }
+
+        // The next tick is at least half a tick after this one, the same as the tick loop schedules it
+        long afterNanos = localTickManager.getTickDeadlineNanos() + localTickManager.getTickEstimator().getPeriodNanos() / 2;
+        if (!localTickManager.predictNextTicks(afterNanos, nextTickNanos, null))
+        {
+            return;
+        }
+
+        queueTickSound(nextTickNanos[0]);
+    }
+
+    /**
+     * Call after a hotkey changes the tick or beat (or the reset key is pressed). Pulls the sound already queued for
+     * the upcoming tick back out of the audio engine and queues the right one in its place,
+     * so looking ahead doesn't stop hotkeys being heard on the very next tick.
+     */
+    public void onTickChangedByHotkey()
+    {
+        // The overlays show the change straight away
+        publishRenderModel();
+
+        synchronized (tickSoundQueueLock)
+        {
+            if (!tickSoundQueued)
+            {
+                return;
+            }
+
+            // Too close to the tick, the queued sound could already be playing so leave it, the change is heard from the next tick
+            if (queuedTickNanos - System.nanoTime() <= audioEngine.getScheduleLeadNanos())
+            {
+                return;
+            }
+
+            // If it couldn't be pulled back it has already started, queueing the new one would double the tick
+            if (!tickSoundManager.retractQueuedSound(queuedTickSequence))
+            {
+                return;
+            }
+            tickSoundQueued = false;
+
+            if (canQueueTickSounds())
+            {
+                queueTickSound(queuedTickNanos);
+            }
+        }
+    }
+
+    /**
+     * Pulls the upcoming tick's queued sound (if any) back out of the audio engine, for when it won't be heard
+     * where it was queued or the tick's sound is about to be played another way. Call while holding tickSoundQueueLock.
+     */
+    private void retractQueuedTickSound()
+    {
+        if (tickSoundQueued)
+        {
+            tickSoundManager.retractQueuedSound(queuedTickSequence);
+            tickSoundQueued = false;
+        }
+    }
+
+    /**
+     * @return true if tick sounds can be queued ahead of their tick with the current settings
+     */
+    private boolean canQueueTickSounds()
+    {
+        return config.preQueueTickSounds() && config.enableTickSmoothing() && config.enableAudioMetronome()
+                && config.audioBackend() == TickBeatsMetronomeConfig.AudioBackend.SOFTWARE_MIXER
+                && audioEngine.isClockReady() && !inputManager.resetActive;
+    }
+
+    /**
+     * Queues the upcoming tick's sound for the given time, tagged with the upcoming tick's sequence number
+     */
+    private void queueTickSound(long tickNanos)
+    {
+        // Work out which tick is coming up the same way advanceTick() will
+        int nextMaxTicks = getMaxTicks();
+        int nextTickCount = (tickCount % nextMaxTicks) + 1;
+
+        queuedTickSequence = localTickSequence + 1;
+        queuedTickNanos = tickNanos;
+        tickSoundQueued = tickSoundManager.queueSound(beatNumber, nextTickCount, tickNanos, queuedTickSequence);
+    }
+
+    /**
+     * Fires a little before every local tick when latency compensation is on, plays the upcoming tick's audio
+     * so it's heard on the tick. The overlays don't change until the tick itself.
+     */
+    private void onLocalAudioCue()
+    {
+        if(!config.enableTickSmoothing() || inputManager.resetActive){
+            return;
+        }
+
+        // Work out which tick is coming up the same way advanceTick() will
+        int nextMaxTicks = getMaxTicks();
+        int nextTickCount = (tickCount % nextMaxTicks) + 1;
+
+        playTickAudio(nextMaxTicks, nextTickCount, localTickManager.getAudioCueNanos());
+        tickAudioCued = true;
+    }
+
+    /**
+     * Sets how early the local tick audio cue fires, the measured output latency of whichever way the
+     * software mixer is playing sounds. Clips can't be measured so they aren't compensated.
+     */
+    private void updateAudioOffset()
+    {
+        long offsetNanos = 0;
+
+        // Only local ticks are known ahead of time, game ticks can't be started early
+        if (config.enableTickSmoothing() && config.latencyCompensation() && config.audioBackend() == TickBeatsMetronomeConfig.AudioBackend.SOFTWARE_MIXER)
+        {
+            // Scheduled sounds are heard a fixed lead after their time, unscheduled ones after whatever is queued on the line
+            offsetNanos = config.sampleAccurateTicks() ? audioEngine.getScheduleLeadNanos() : audioEngine.getOutputLatencyNanos();
+        }
+
+        if (!audioEngine.isRunning())
+        {
+            offsetNanos = 0;
+        }
+
+        localTickManager.setAudioLeadNanos(offsetNanos);
+        audioOffsetNanos = localTickManager.getAudioLeadNanos();
+    }
+
+    /**
+     * Advances the metronome and plays this tick's audio
+     * @param tickNanos The System.nanoTime() this tick was meant to happen at, used to schedule audio
+     */
+    private void onTick(long tickNanos){
         // If the reset key is being held, don't do anything on the game tick
         if(inputManager.resetActive)
         {
             return;
         }
 
+        advanceTick();
+        playTickAudio(maxTicks, tickCount, tickNanos);
+
+        // Built after the audio so a song that just started on tick 1 is shown
+        lastTickNanos = tickNanos;
+        publishRenderModel();
+    }
+
+    /**
+     * Moves the metronome on to the next tick
+     */
+    private void advanceTick()
+    {
         // Update maxTicks count based on current beat
-        switch (beatNumber) {
-            case 1: maxTicks = config.beat1TickCount(); break;
-            case 2: maxTicks = config.beat2TickCount(); break;
-            case 3: maxTicks = config.beat3TickCount(); break;
-            default: maxTicks = config.beat1TickCount(); break;
-        }
+        maxTicks = getMaxTicks();
 
         // Increment the tick counter and wrap back to 1 if over max
         tickCount = (tickCount % maxTicks) + 1;
+    }
+
+    /**
+     * @return the max number of ticks for the current beat
+     */
+    private int getMaxTicks()
+    {
+        return tickPatternManager.getPattern().getTickCount(beatNumber);
+    }
 
-        // If Audio Metronome is enabled play the audio for the current tick
-        if(config.enableAudioMetronome()){
-            tickSoundManager.playSound(beatNumber, tickCount);
+    /**
+     * Plays the tick sound and music for a tick
+     * @param tickMax How many ticks the current beat has
+     * @param tick Which tick to play the audio for
+     * @param tickNanos The System.nanoTime() the audio was meant to start at, used to schedule audio
+     */
+    private void playTickAudio(int tickMax, int tick, long tickNanos)
+    {
+        // If Audio Metronome is enabled play the audio for the current tick, unless it was already queued
+        if(config.enableAudioMetronome() && !tickSoundQueued){
+            tickSoundManager.playSound(beatNumber, tick, tickNanos);
         }
 
         // If Enable Music is checked
         if(config.enableMusic()) {
 
             // If music isn't playing, and we're at tick 1 start playing music
-            if (!musicManager.isPlaying() && tickCount == 1) {
+            if (!musicManager.isPlaying() && tick == 1) {
                 musicManager.start();
             }
 
             // Play the music clips
-            musicManager.onTick(maxTicks, tickCount, config.musicVolume());
+            musicManager.onTick(tickMax, tick, config.musicVolume(), tickNanos);
         }else{
             // If Enable Music isn't checked, stop the music clips from playing
             musicManager.stop();
@@ -248,6 +568,9 @@ public class TickBeatsMetronomePlugin extends Plugin {
             return;
         }
 
+        // Any setting could be part of the beat/tick grid, rebuild it before anything below uses it
+        tickPatternManager.refresh();
+
         // If event is coming from the music track dropdown
         if (event.getKey().equals("musicTrack"))
         {
@@ -282,6 +605,132 @@ public class TickBeatsMetronomePlugin extends Plugin {
             // Refresh the user sound cache in case the user has made changes to their user sounds folder
             tickSoundCache.cacheAllUserSounds();
         }
+
+        // Detect TickSound or volume changes and rebuild the pre-scaled sounds to match
+        if (event.getKey().startsWith("beat") && (event.getKey().endsWith("Sound") || event.getKey().endsWith("Volume")))
+        {
+            tickSoundManager.refreshConfiguredVolumes();
+        }
+
+        // Keep the audio engine's voice limit in sync with the setting
+        if (event.getKey().equals("maxPolyphony"))
+        {
+            audioEngine.setMaxPolyphony(config.maxPolyphony());
+        }
+
+        // If the tick sound backend changed open or close the pooled Clips to match
+        if (event.getKey().equals("audioBackend"))
+        {
+            tickSoundCache.rebuildClipPool();
+        }
+
+        // If smoothing, pre-queueing, the backend or the audio metronome was changed so sounds can't be queued any more,
+        // the upcoming tick's sound is played on the tick, so the one already queued has to go
+        if (!canQueueTickSounds())
+        {
+            synchronized (tickSoundQueueLock)
+            {
+                retractQueuedTickSound();
+            }
+        }
+
+        // Switch the local tick timer between parking and spinning
+        if (event.getKey().equals("precisionTickTimer") && tickClock != null)
+        {
+            tickClock.setPrecise(config.precisionTickTimer());
+        }
+
+        // Start or stop recording a tick trace
+        if (event.getKey().equals("recordTickTrace"))
+        {
+            if (config.recordTickTrace())
+            {
+                tickTraceRecorder.start();
+            }
+            else
+            {
+                tickTraceRecorder.stop();
+                if (tickTraceRecorder.getTraceFile() != null)
+                {
+                    overlayMessage.show("Tick trace saved to:", tickTraceRecorder.getTraceFile().getAbsolutePath());
+                }
+            }
+        }
+
+        // The save tick timing stats checkbox works like a button, save the stats then untick it
+        if (event.getKey().equals("dumpTickTimingStats") && config.dumpTickTimingStats())
+        {
+            dumpTickTimingStats();
+            configManager.setConfiguration("tickBeats", "dumpTickTimingStats", false);
+        }
+
+        // The overhead number sprites are drawn in the font size and tick colors, make them again if those change
+        if (event.getKey().equals("fontSize") || (event.getKey().startsWith("beat") && event.getKey().endsWith("Color")))
+        {
+            tickNumberSprites.invalidate();
+        }
+
+        // Any setting could change what the overlays show
+        publishRenderModel();
+    }
+
+    /**
+     * Writes the tick timing histograms to a file in .runelite/tick-beats/logs
+     */
+    private void dumpTickTimingStats()
+    {
+        if (localTickManager == null)
+        {
+            return;
+        }
+
+        File logFile = new File(TICK_TIMING_LOG_DIRECTORY,
+                "tick-timing-" + new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date()) + ".txt");
+
+        try
+        {
+            Files.createDirectories(TICK_TIMING_LOG_DIRECTORY.toPath());
+            Files.write(logFile.toPath(), localTickManager.formatTimingStats().getBytes(StandardCharsets.UTF_8));
+            overlayMessage.show("Tick timing stats saved to:", logFile.getAbsolutePath());
+        }
+        catch (IOException e)
+        {
+            log.debug("Failed to save tick timing stats: {}", e.getMessage());
+            overlayMessage.show("Failed to save tick timing stats", e.getMessage());
+        }
+    }
+
+    /**
+     * Builds what the overlays draw for the current tick and hands it to them in one volatile write.
+     * Called from the tick thread, the client thread and hotkeys, so builds are one at a time
+     * and the last one published is always from the latest tick count and settings.
+     */
+    public synchronized void publishRenderModel()
+    {
+        MusicTrack currentTrack = musicManager.getCurrentTrack();
+        String songName = currentTrack != null ? currentTrack.getDisplayName() : null;
+
+        // Ticks are nominally 600ms until the local tick manager has measured them
+        long tickPeriodNanos = localTickManager != null ? localTickManager.getTickEstimator().getPeriodNanos() : TimeUnit.MILLISECONDS.toNanos(600);
+
+        renderModel = TickRenderModel.build(beatNumber, tickCount, maxTicks, lastTickNanos, tickPeriodNanos,
+                tickPatternManager.getPattern(), config, songName, renderModel);
+    }
+
+    /**
+     * @return What the overlays should draw for the current tick, or null before the plugin has started
+     */
+    public TickRenderModel getRenderModel()
+    {
+        return renderModel;
+    }
+
+    /**
+     * @return The local tick manager, or null while the plugin isn't running
+     */
+    public LocalTickManager getLocalTickManager()
+    {
+        return localTickManager;
     }
 
     // I believe this is Required by RuneLite to provide config interface.
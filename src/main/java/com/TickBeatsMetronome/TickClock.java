@@ -0,0 +1,38 @@
+package com.TickBeatsMetronome;
+
+/**
+ * TickClock is where LocalTickManager gets the time from and schedules its ticks on.
+ *
+ * In the plugin this is {@link SystemTickClock} (System.nanoTime() and a background thread), but swapping in
+ * {@link SimulatedTickClock} lets the tick smoothing be driven by made up GameTick arrivals (lag spikes, world hops,
+ * drift) as fast as the CPU can run them instead of in real time.
+ */
+public interface TickClock
+{
+    /**
+     * A scheduled task that can be cancelled before it runs.
+     */
+    interface Task
+    {
+        void cancel();
+    }
+
+    /**
+     * @return The current time in nanoseconds, only meaningful compared to other times from the same clock
+     */
+    long nanoTime();
+
+    /**
+     * Runs a task once the clock reaches the given time, or as soon as possible if it's already passed.
+     *
+     * @param task          What to run
+     * @param deadlineNanos The {@link #nanoTime()} to run it at
+     * @return A handle for cancelling the task
+     */
+    Task schedule(Runnable task, long deadlineNanos);
+
+    /**
+     * Cancels everything still scheduled and stops the clock's thread, if it has one.
+     */
+    void shutdown();
+}
@@ -0,0 +1,233 @@
+package com.TickBeatsMetronome;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TickEstimator tracks the phase (when the last server tick happened) and period (how long a server tick is)
+ * from GameTick arrival times, so LocalTickManager can fire local ticks on an even grid that lines up with the server.
+ *
+ * It's a second-order phase-locked loop (an alpha-beta filter): every arrival is compared to where the grid predicted
+ * it, and the phase and period are each nudged by a fraction of the error.
+ *
+ * Right after login or a reset the fractions start big and shrink with every tick (the same as a least squares fit
+ * over every tick so far), so it locks on within a few ticks. Then they settle at small fixed values so the period
+ * holds steady. Arrivals much later or earlier than the usual jitter (lag spikes) are ignored rather than dragging
+ * the grid around, and if too many in a row are ignored the grid must really have moved, so it locks on again.
+ *
+ * Server ticks are the same length on every world, so a world hop or a brief disconnect only needs the phase found
+ * again ({@link #resetPhase()}). Once the period has been estimated from enough ticks it's kept, and relocking only
+ * averages the phase over the first few ticks, so it's back on the grid after one or two ticks instead of wobbling
+ * while the period is worked out again.
+ */
+@Slf4j
+public class TickEstimator
+{
+    // Server ticks are nominally 600ms, the period estimate is kept within 1% of that
+    private static final long NOMINAL_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(600);
+    private static final long MIN_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(594);
+    private static final long MAX_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(606);
+
+    // Steady state loop gains once locked, beta is picked for a critically damped loop (beta = alpha² / (2 - alpha))
+    private static final double ALPHA = 0.1;
+    private static final double BETA = ALPHA * ALPHA / (2 - ALPHA);
+
+    // Arrivals are never treated as outliers until this many ticks have been used
+    private static final int MIN_TICKS_FOR_OUTLIERS = 5;
+
+    // An arrival is an outlier if it's off the grid by more than this many times the usual jitter (and at least 30ms)
+    private static final double OUTLIER_JITTER_MULTIPLE = 4;
+    private static final long MIN_OUTLIER_NANOS = TimeUnit.MILLISECONDS.toNanos(30);
+
+    // After this many outliers in a row, give up on the old grid and lock on again
+    private static final int MAX_CONSECUTIVE_OUTLIERS = 4;
+
+    // Once the period has been estimated from this many ticks it's trusted through relocks and hops
+    private static final int CONFIDENT_PERIOD_TICKS = 20;
+
+    // A gap of more than this many ticks between arrivals (e.g. a loading screen) means the grid can't be trusted
+    private static final int MAX_GAP_TICKS = 3;
+
+    // How much each error moves the jitter estimate (1/16)
+    private static final int JITTER_SMOOTHING = 16;
+
+    // System.nanoTime() of the last tick on the estimated grid
+    private long phaseNanos = 0;
+
+    // Estimated length of a tick, kept as a double so the small period corrections aren't rounded away
+    private double periodNanos = NOMINAL_PERIOD_NANOS;
+
+    // Average distance of arrivals from the grid
+    private double jitterNanos = TimeUnit.MILLISECONDS.toNanos(10);
+
+    // How many arrivals have been used since the last (re)lock
+    private int tickCount = 0;
+
+    // How many arrivals the period estimate is based on, kept through relocks
+    private int periodTickCount = 0;
+
+    private int consecutiveOutliers = 0;
+
+    /**
+     * Feeds in a server tick arrival.
+     *
+     * @param arrivalNanos The System.nanoTime() the GameTick arrived at
+     */
+    public synchronized void onTick(long arrivalNanos)
+    {
+        // The first tick just sets where the grid starts
+        if (tickCount == 0)
+        {
+            phaseNanos = arrivalNanos;
+            tickCount = 1;
+            return;
+        }
+
+        // Every GameTick is one server tick, even when lag delivers a few of them late or bunched together
+        long predictedNanos = phaseNanos + Math.round(periodNanos);
+        long errorNanos = arrivalNanos - predictedNanos;
+
+        // Ticks stopped coming for a while, start again from this tick
+        if (arrivalNanos - phaseNanos > MAX_GAP_TICKS * periodNanos)
+        {
+            relock(arrivalNanos);
+            return;
+        }
+
+        if (tickCount >= MIN_TICKS_FOR_OUTLIERS && Math.abs(errorNanos) > getOutlierThresholdNanos())
+        {
+            consecutiveOutliers++;
+
+            if (consecutiveOutliers >= MAX_CONSECUTIVE_OUTLIERS)
+            {
+                // The ticks have really moved, start again from this tick
+                relock(arrivalNanos);
+            }
+            else
+            {
+                // Ignore the lag spike and carry on along the grid
+                phaseNanos = predictedNanos;
+            }
+            return;
+        }
+
+        consecutiveOutliers = 0;
+        tickCount++;
+        periodTickCount++;
+
+        // While locking on, use the gains of a least squares fit over every tick so far, then settle on the steady gains.
+        // If the period is already known from before a relock, only the phase needs finding, so just average it
+        // and leave the period to the steady gain
+        double alpha;
+        double beta;
+        if (periodTickCount > tickCount && periodTickCount >= CONFIDENT_PERIOD_TICKS)
+        {
+            alpha = Math.max(ALPHA, 1.0 / tickCount);
+            beta = BETA;
+        }
+        else
+        {
+            alpha = Math.max(ALPHA, 2.0 * (2 * tickCount - 1) / (tickCount * (tickCount + 1.0)));
+
+            // The first arrival only sets the phase and isn't in periodTickCount, so the fit is over one more tick than that.
+            // On the second arrival this gives alpha = beta = 1, a bigger beta would make the loop overshoot
+            beta = Math.max(BETA, 6.0 / ((periodTickCount + 1.0) * (periodTickCount + 2.0)));
+        }
+
+        phaseNanos = predictedNanos + Math.round(alpha * errorNanos);
+        periodNanos += beta * errorNanos;
+        periodNanos = Math.max(MIN_PERIOD_NANOS, Math.min(MAX_PERIOD_NANOS, periodNanos));
+
+        jitterNanos += (Math.abs(errorNanos) - jitterNanos) / JITTER_SMOOTHING;
+    }
+
+    /**
+     * @param timeNanos A System.nanoTime()
+     * @return The first tick on the estimated grid after the given time, or 0 if no ticks have been seen yet
+     */
+    public synchronized long predictTickAfter(long timeNanos)
+    {
+        if (tickCount == 0)
+        {
+            return 0;
+        }
+
+        long ticksAhead = (long) Math.floor((timeNanos - phaseNanos) / periodNanos) + 1;
+        return phaseNanos + Math.round(ticksAhead * periodNanos);
+    }
+
+    /**
+     * A rough bound on how far off a predicted tick can be, the usual arrival jitter plus the period's error
+     * adding up for every tick ahead (the error of a least squares slope over the ticks the period is based on).
+     *
+     * @param ticksAhead 1 for the next tick, 2 for the one after...
+     * @return The uncertainty in nanoseconds
+     */
+    public synchronized long getUncertaintyNanos(int ticksAhead)
+    {
+        // The steady gains only remember about the last 2 / alpha ticks
+        double ticks = Math.max(1, Math.min(periodTickCount, 2 / ALPHA));
+        double periodErrorNanos = jitterNanos * Math.sqrt(12 / (ticks * ticks * ticks));
+        return Math.round(jitterNanos + ticksAhead * periodErrorNanos);
+    }
+
+    /**
+     * @return The estimated length of a server tick in nanoseconds
+     */
+    public synchronized long getPeriodNanos()
+    {
+        return Math.round(periodNanos);
+    }
+
+    /**
+     * @return The average distance of tick arrivals from the estimated grid in nanoseconds
+     */
+    public synchronized long getJitterNanos()
+    {
+        return Math.round(jitterNanos);
+    }
+
+    /**
+     * @return How much the period estimate is trusted, from 0 (nominal 600ms) to 1 (kept through relocks and hops)
+     */
+    public synchronized double getPeriodConfidence()
+    {
+        return Math.min(1, (double) periodTickCount / CONFIDENT_PERIOD_TICKS);
+    }
+
+    /**
+     * Forgets where the ticks are but keeps the period, and locks on again from the next tick.
+     * For world hops and disconnects, where the tick grid moves but ticks are still the same length.
+     */
+    public synchronized void resetPhase()
+    {
+        phaseNanos = 0;
+        tickCount = 0;
+        consecutiveOutliers = 0;
+    }
+
+    /**
+     * Forgets everything and starts locking on again from the next tick.
+     */
+    public synchronized void reset()
+    {
+        resetPhase();
+        periodNanos = NOMINAL_PERIOD_NANOS;
+        jitterNanos = TimeUnit.MILLISECONDS.toNanos(10);
+        periodTickCount = 0;
+    }
+
+    private void relock(long arrivalNanos)
+    {
+        log.debug("Tick estimator lost lock, relocking (period confidence {})", getPeriodConfidence());
+        phaseNanos = arrivalNanos;
+        tickCount = 1;
+        consecutiveOutliers = 0;
+    }
+
+    private long getOutlierThresholdNanos()
+    {
+        return Math.max(MIN_OUTLIER_NANOS, Math.round(jitterNanos * OUTLIER_JITTER_MULTIPLE));
+    }
+}
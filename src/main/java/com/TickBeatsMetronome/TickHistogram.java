@@ -0,0 +1,144 @@
+package com.TickBeatsMetronome;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TickHistogram counts timing measurements into fixed width buckets, so recording one is just an array increment
+ * and nothing is allocated no matter how long the plugin runs.
+ *
+ * Values below or above the range land in the first or last bucket, the exact max is kept separately.
+ * Percentiles are read back at bucket resolution.
+ *
+ * Each histogram should only be recorded to from one thread, reading from another thread (e.g. the info box)
+ * can be off by a measurement or two, which is fine for stats.
+ */
+public class TickHistogram
+{
+    private final String name;
+    private final long minNanos;
+    private final long bucketNanos;
+    private final long[] buckets;
+
+    private long count = 0;
+    private long maxNanos = Long.MIN_VALUE;
+
+    /**
+     * @param name        Label used in dumps
+     * @param minNanos    Value the first bucket starts at
+     * @param maxNanos    Value the last bucket ends at
+     * @param bucketNanos Width of each bucket
+     */
+    public TickHistogram(String name, long minNanos, long maxNanos, long bucketNanos)
+    {
+        this.name = name;
+        this.minNanos = minNanos;
+        this.bucketNanos = bucketNanos;
+        this.buckets = new long[(int) ((maxNanos - minNanos) / bucketNanos)];
+    }
+
+    /**
+     * Adds a measurement.
+     */
+    public void record(long valueNanos)
+    {
+        int bucket = (int) Math.max(0, Math.min(buckets.length - 1, (valueNanos - minNanos) / bucketNanos));
+        buckets[bucket]++;
+        count++;
+
+        if (valueNanos > maxNanos)
+        {
+            maxNanos = valueNanos;
+        }
+    }
+
+    /**
+     * @return How many measurements have been recorded
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return The largest measurement recorded, or 0 if there are none
+     */
+    public long getMaxNanos()
+    {
+        return count == 0 ? 0 : maxNanos;
+    }
+
+    /**
+     * @param percentile Between 0 and 100, e.g. 50 for the median or 99
+     * @return The middle of the bucket the percentile falls in, or 0 if there are no measurements
+     */
+    public long getPercentileNanos(double percentile)
+    {
+        long total = count;
+        if (total == 0)
+        {
+            return 0;
+        }
+
+        // The measurement the percentile lands on, counting from 1
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+
+        for (int i = 0; i < buckets.length; i++)
+        {
+            seen += buckets[i];
+            if (seen >= target)
+            {
+                // The middle of the bucket can be past the largest value actually recorded
+                return Math.min(minNanos + i * bucketNanos + bucketNanos / 2, getMaxNanos());
+            }
+        }
+
+        return minNanos + buckets.length * bucketNanos;
+    }
+
+    /**
+     * Clears every measurement.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < buckets.length; i++)
+        {
+            buckets[i] = 0;
+        }
+        count = 0;
+        maxNanos = Long.MIN_VALUE;
+    }
+
+    /**
+     * @return p50 / p99 / max in milliseconds, e.g. "600.2 / 612.8 / 640.1"
+     */
+    public String getSummary()
+    {
+        return formatMillis(getPercentileNanos(50)) + " / " + formatMillis(getPercentileNanos(99)) + " / " + formatMillis(getMaxNanos());
+    }
+
+    /**
+     * Writes the summary and every non-empty bucket, for dumping to a log file.
+     */
+    public void appendTo(StringBuilder builder)
+    {
+        builder.append(name).append(" (").append(count).append(" samples)\n");
+        builder.append("  p50 / p99 / max: ").append(getSummary()).append(" ms\n");
+
+        for (int i = 0; i < buckets.length; i++)
+        {
+            if (buckets[i] == 0)
+            {
+                continue;
+            }
+
+            builder.append("  ").append(formatMillis(minNanos + i * bucketNanos))
+                    .append(" ms: ").append(buckets[i]).append('\n');
+        }
+    }
+
+    private static String formatMillis(long nanos)
+    {
+        return String.format("%.1f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
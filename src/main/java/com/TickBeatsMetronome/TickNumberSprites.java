@@ -0,0 +1,130 @@
+package com.TickBeatsMetronome;
+
+import javax.inject.Singleton;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * TickNumberSprites draws the overhead tick number from images rendered once, instead of rasterizing the text
+ * five times (four black outline passes and the colored fill) every frame.
+ *
+ * There's one sprite for every beat and tick (0–9, tick 0 is before the first tick), each holding the outlined number
+ * in that tick's color. A sprite is made the first time its tick is drawn and kept until the font size or a tick color
+ * changes, the plugin calls {@link #invalidate()} for those settings. Every sprite also remembers the color and font
+ * it was made with and is made again if they don't match, so a frame drawn mid config change can't show a stale one.
+ *
+ * Only used from the client thread while rendering, apart from invalidate().
+ */
+@Singleton
+public class TickNumberSprites
+{
+    // The outline is drawn 1 pixel out in each direction, so sprites have a 1 pixel border around the text
+    private static final int OUTLINE = 1;
+
+    private volatile Sprite[][] sprites = new Sprite[TickPattern.BEATS][TickPattern.TICKS + 1];
+
+    /**
+     * Draws the model's tick number, outlined in black, centered on the given point.
+     *
+     * @param graphics  The overlay's graphics, its rendering hints are used when a sprite is made
+     * @param model     The current tick
+     * @param centerX   Where the middle of the text goes
+     * @param baselineY Where the text's baseline goes
+     */
+    public void draw(Graphics2D graphics, TickRenderModel model, int centerX, int baselineY)
+    {
+        Sprite sprite = getSprite(graphics, model);
+        graphics.drawImage(sprite.image, centerX - sprite.textWidth / 2 - OUTLINE, baselineY - sprite.ascent - OUTLINE, null);
+    }
+
+    /**
+     * Drops every sprite, call when the font size or a tick color changes.
+     */
+    public void invalidate()
+    {
+        sprites = new Sprite[TickPattern.BEATS][TickPattern.TICKS + 1];
+    }
+
+    private Sprite getSprite(Graphics2D graphics, TickRenderModel model)
+    {
+        int beat = model.getBeatNumber();
+        int tick = model.getTickCount();
+
+        // Ticks outside the grid shouldn't happen, but if one does just make its sprite without keeping it
+        if (beat < 1 || beat > TickPattern.BEATS || tick < 0 || tick > TickPattern.TICKS)
+        {
+            return new Sprite(graphics, model);
+        }
+
+        Sprite[][] current = sprites;
+        Sprite sprite = current[beat - 1][tick];
+
+        if (sprite == null || !sprite.matches(model))
+        {
+            sprite = new Sprite(graphics, model);
+            current[beat - 1][tick] = sprite;
+        }
+
+        return sprite;
+    }
+
+    /**
+     * One tick number with its outline, and what it was made from.
+     */
+    private static class Sprite
+    {
+        private final BufferedImage image;
+        private final String text;
+        private final Color color;
+        private final Font font;
+        private final int textWidth;
+        private final int ascent;
+
+        private Sprite(Graphics2D graphics, TickRenderModel model)
+        {
+            text = model.getTickText();
+            color = model.getTextColor();
+            font = model.getFont();
+
+            FontMetrics metrics = graphics.getFontMetrics(font);
+            textWidth = metrics.stringWidth(text);
+            ascent = metrics.getAscent();
+
+            image = new BufferedImage(textWidth + OUTLINE * 2, ascent + metrics.getDescent() + OUTLINE * 2, BufferedImage.TYPE_INT_ARGB);
+
+            Graphics2D spriteGraphics = image.createGraphics();
+            try
+            {
+                // Match the overlay's antialiasing so the sprite looks the same as drawing the text directly
+                spriteGraphics.setRenderingHints(graphics.getRenderingHints());
+                spriteGraphics.setFont(font);
+
+                int x = OUTLINE;
+                int y = OUTLINE + ascent;
+
+                // Draw black outline around text (offset by 1 pixel in each direction)
+                spriteGraphics.setColor(Color.BLACK);
+                spriteGraphics.drawString(text, x + 1, y);
+                spriteGraphics.drawString(text, x - 1, y);
+                spriteGraphics.drawString(text, x, y + 1);
+                spriteGraphics.drawString(text, x, y - 1);
+
+                // Draw text in tick-specific color
+                spriteGraphics.setColor(color);
+                spriteGraphics.drawString(text, x, y);
+            }
+            finally
+            {
+                spriteGraphics.dispose();
+            }
+        }
+
+        /**
+         * @return true if this sprite shows the model's text in its color and font
+         */
+        private boolean matches(TickRenderModel model)
+        {
+            return text.equals(model.getTickText()) && color.equals(model.getTextColor()) && font.equals(model.getFont());
+        }
+    }
+}
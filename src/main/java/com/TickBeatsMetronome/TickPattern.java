@@ -0,0 +1,381 @@
+package com.TickBeatsMetronome;
+
+import java.awt.*;
+
+/**
+ * TickPattern is a snapshot of every beat's tick count and every tick's sound, volume, color and opacity,
+ * read out of the config once into plain arrays.
+ *
+ * Every config getter is a ConfigManager lookup and a string parse, so instead of calling them every tick
+ * (or every frame for the overlays) a TickPattern is compiled when the plugin starts and whenever the config changes,
+ * and {@link TickPatternManager} hands out the current one. A TickPattern never changes once it's built,
+ * so it's safe to read from the tick, audio and render threads all at once.
+ *
+ * Beats are 1–3 and ticks are 1–9, the same as the config. Unknown beats use Beat 1, unknown ticks (like tick 0
+ * before the first tick) have no sound, a white color and no opacity.
+ *
+ * Each tick's overlay color is also built at every step of the color overlay's fade ({@link #getOverlayFade}),
+ * so the fade just picks a color out of a table each frame.
+ */
+public final class TickPattern
+{
+    public static final int BEATS = 3;
+    public static final int TICKS = 9;
+
+    // How many steps the color overlay fade has over a tick, the table has one more entry for fully faded out
+    public static final int FADE_STEPS = 64;
+
+    private static final Color TRANSPARENT = new Color(255, 255, 255, 0);
+    private static final Color[] TRANSPARENT_FADE = buildFade(TRANSPARENT);
+
+    private final int enabledBeats;
+    private final int[] tickCounts = new int[BEATS];
+    private final TickSoundOption[][] sounds = new TickSoundOption[BEATS][TICKS];
+    private final int[][] volumes = new int[BEATS][TICKS];
+    private final Color[][] colors = new Color[BEATS][TICKS];
+    private final float[][] opacities = new float[BEATS][TICKS];
+
+    // The tick colors with their opacity already applied, for the color overlay
+    private final Color[][] overlayColors = new Color[BEATS][TICKS];
+
+    // The overlay colors at every step of the fade
+    private final Color[][][] overlayFades = new Color[BEATS][TICKS][];
+
+    private TickPattern(TickBeatsMetronomeConfig config)
+    {
+        enabledBeats = config.enabledBeats();
+
+        for (int beat = 1; beat <= BEATS; beat++)
+        {
+            tickCounts[beat - 1] = readTickCount(config, beat);
+
+            for (int tick = 1; tick <= TICKS; tick++)
+            {
+                Color color = readColor(config, beat, tick);
+                float opacity = readOpacity(config, beat, tick) / 100f;
+
+                sounds[beat - 1][tick - 1] = readSound(config, beat, tick);
+                volumes[beat - 1][tick - 1] = readVolume(config, beat, tick);
+                colors[beat - 1][tick - 1] = color;
+                opacities[beat - 1][tick - 1] = opacity;
+                overlayColors[beat - 1][tick - 1] = new Color(color.getRed(), color.getGreen(), color.getBlue(), Math.round(opacity * 255));
+                overlayFades[beat - 1][tick - 1] = buildFade(overlayColors[beat - 1][tick - 1]);
+            }
+        }
+    }
+
+    /**
+     * Reads the whole beat/tick grid out of the config.
+     */
+    public static TickPattern compile(TickBeatsMetronomeConfig config)
+    {
+        return new TickPattern(config);
+    }
+
+    /**
+     * @return How many beats can be rotated through with the hotkeys
+     */
+    public int getEnabledBeats()
+    {
+        return enabledBeats;
+    }
+
+    /**
+     * @return How many ticks are in the given beat's loop
+     */
+    public int getTickCount(int beatNumber)
+    {
+        return tickCounts[beatIndex(beatNumber)];
+    }
+
+    /**
+     * @return The sound for the given beat and tick, OFF for unknown ticks
+     */
+    public TickSoundOption getSound(int beatNumber, int tick)
+    {
+        return isTick(tick) ? sounds[beatIndex(beatNumber)][tick - 1] : TickSoundOption.OFF;
+    }
+
+    /**
+     * @return The volume (0–150) for the given beat and tick, 100 for unknown ticks
+     */
+    public int getVolume(int beatNumber, int tick)
+    {
+        return isTick(tick) ? volumes[beatIndex(beatNumber)][tick - 1] : 100;
+    }
+
+    /**
+     * @return The text and overlay color for the given beat and tick, white for unknown ticks
+     */
+    public Color getColor(int beatNumber, int tick)
+    {
+        return isTick(tick) ? colors[beatIndex(beatNumber)][tick - 1] : Color.WHITE;
+    }
+
+    /**
+     * @return The overlay opacity (0–1) for the given beat and tick, 0 for unknown ticks
+     */
+    public float getOpacity(int beatNumber, int tick)
+    {
+        return isTick(tick) ? opacities[beatIndex(beatNumber)][tick - 1] : 0f;
+    }
+
+    /**
+     * @return The color with its opacity applied for the color overlay, fully transparent for unknown ticks
+     */
+    public Color getOverlayColor(int beatNumber, int tick)
+    {
+        return isTick(tick) ? overlayColors[beatIndex(beatNumber)][tick - 1] : TRANSPARENT;
+    }
+
+    /**
+     * The overlay color faded out over a tick, entry 0 is the full overlay color and entry {@link #FADE_STEPS}
+     * is fully transparent. Shared between everything that reads this pattern, so don't change it.
+     *
+     * @return FADE_STEPS + 1 colors, all fully transparent for unknown ticks
+     */
+    public Color[] getOverlayFade(int beatNumber, int tick)
+    {
+        return isTick(tick) ? overlayFades[beatIndex(beatNumber)][tick - 1] : TRANSPARENT_FADE;
+    }
+
+    /**
+     * Builds the fade table for an overlay color. The alpha drops off quickly then eases out,
+     * (1 - progress)², so the color reads as a flash on the tick rather than a slow dim.
+     */
+    private static Color[] buildFade(Color color)
+    {
+        Color[] fade = new Color[FADE_STEPS + 1];
+
+        for (int step = 0; step <= FADE_STEPS; step++)
+        {
+            float remaining = 1f - (float) step / FADE_STEPS;
+            int alpha = Math.round(color.getAlpha() * remaining * remaining);
+
+            // Reuse the full color where nothing has faded yet
+            fade[step] = alpha == color.getAlpha() ? color : new Color(color.getRed(), color.getGreen(), color.getBlue(), alpha);
+        }
+
+        return fade;
+    }
+
+    private static int beatIndex(int beatNumber)
+    {
+        return beatNumber >= 1 && beatNumber <= BEATS ? beatNumber - 1 : 0;
+    }
+
+    private static boolean isTick(int tick)
+    {
+        return tick >= 1 && tick <= TICKS;
+    }
+
+    ////////////////////////////////////////////////
+    //////////////  Config Lookups  ////////////////
+    ////////////////////////////////////////////////
+
+    private static int readTickCount(TickBeatsMetronomeConfig config, int beatNumber)
+    {
+        switch (beatNumber)
+        {
+            case 2:  return config.beat2TickCount();
+            case 3:  return config.beat3TickCount();
+            default: return config.beat1TickCount();
+        }
+    }
+
+    private static TickSoundOption readSound(TickBeatsMetronomeConfig config, int beatNumber, int tick)
+    {
+        switch (beatNumber)
+        {
+            case 2:
+                switch (tick)
+                {
+                    case 1:  return config.beat2Tick1Sound();
+                    case 2:  return config.beat2Tick2Sound();
+                    case 3:  return config.beat2Tick3Sound();
+                    case 4:  return config.beat2Tick4Sound();
+                    case 5:  return config.beat2Tick5Sound();
+                    case 6:  return config.beat2Tick6Sound();
+                    case 7:  return config.beat2Tick7Sound();
+                    case 8:  return config.beat2Tick8Sound();
+                    case 9:  return config.beat2Tick9Sound();
+                    default: return TickSoundOption.OFF;
+                }
+            case 3:
+                switch (tick)
+                {
+                    case 1:  return config.beat3Tick1Sound();
+                    case 2:  return config.beat3Tick2Sound();
+                    case 3:  return config.beat3Tick3Sound();
+                    case 4:  return config.beat3Tick4Sound();
+                    case 5:  return config.beat3Tick5Sound();
+                    case 6:  return config.beat3Tick6Sound();
+                    case 7:  return config.beat3Tick7Sound();
+                    case 8:  return config.beat3Tick8Sound();
+                    case 9:  return config.beat3Tick9Sound();
+                    default: return TickSoundOption.OFF;
+                }
+            default:
+                switch (tick)
+                {
+                    case 1:  return config.beat1Tick1Sound();
+                    case 2:  return config.beat1Tick2Sound();
+                    case 3:  return config.beat1Tick3Sound();
+                    case 4:  return config.beat1Tick4Sound();
+                    case 5:  return config.beat1Tick5Sound();
+                    case 6:  return config.beat1Tick6Sound();
+                    case 7:  return config.beat1Tick7Sound();
+                    case 8:  return config.beat1Tick8Sound();
+                    case 9:  return config.beat1Tick9Sound();
+                    default: return TickSoundOption.OFF;
+                }
+        }
+    }
+
+    private static int readVolume(TickBeatsMetronomeConfig config, int beatNumber, int tick)
+    {
+        switch (beatNumber)
+        {
+            case 2:
+                switch (tick)
+                {
+                    case 1:  return config.beat2Tick1Volume();
+                    case 2:  return config.beat2Tick2Volume();
+                    case 3:  return config.beat2Tick3Volume();
+                    case 4:  return config.beat2Tick4Volume();
+                    case 5:  return config.beat2Tick5Volume();
+                    case 6:  return config.beat2Tick6Volume();
+                    case 7:  return config.beat2Tick7Volume();
+                    case 8:  return config.beat2Tick8Volume();
+                    case 9:  return config.beat2Tick9Volume();
+                    default: return 100;
+                }
+            case 3:
+                switch (tick)
+                {
+                    case 1:  return config.beat3Tick1Volume();
+                    case 2:  return config.beat3Tick2Volume();
+                    case 3:  return config.beat3Tick3Volume();
+                    case 4:  return config.beat3Tick4Volume();
+                    case 5:  return config.beat3Tick5Volume();
+                    case 6:  return config.beat3Tick6Volume();
+                    case 7:  return config.beat3Tick7Volume();
+                    case 8:  return config.beat3Tick8Volume();
+                    case 9:  return config.beat3Tick9Volume();
+                    default: return 100;
+                }
+            default:
+                switch (tick)
+                {
+                    case 1:  return config.beat1Tick1Volume();
+                    case 2:  return config.beat1Tick2Volume();
+                    case 3:  return config.beat1Tick3Volume();
+                    case 4:  return config.beat1Tick4Volume();
+                    case 5:  return config.beat1Tick5Volume();
+                    case 6:  return config.beat1Tick6Volume();
+                    case 7:  return config.beat1Tick7Volume();
+                    case 8:  return config.beat1Tick8Volume();
+                    case 9:  return config.beat1Tick9Volume();
+                    default: return 100;
+                }
+        }
+    }
+
+    private static Color readColor(TickBeatsMetronomeConfig config, int beatNumber, int tick)
+    {
+        switch (beatNumber)
+        {
+            case 2:
+                switch (tick)
+                {
+                    case 1:  return config.beat2Tick1Color();
+                    case 2:  return config.beat2Tick2Color();
+                    case 3:  return config.beat2Tick3Color();
+                    case 4:  return config.beat2Tick4Color();
+                    case 5:  return config.beat2Tick5Color();
+                    case 6:  return config.beat2Tick6Color();
+                    case 7:  return config.beat2Tick7Color();
+                    case 8:  return config.beat2Tick8Color();
+                    case 9:  return config.beat2Tick9Color();
+                    default: return Color.WHITE;
+                }
+            case 3:
+                switch (tick)
+                {
+                    case 1:  return config.beat3Tick1Color();
+                    case 2:  return config.beat3Tick2Color();
+                    case 3:  return config.beat3Tick3Color();
+                    case 4:  return config.beat3Tick4Color();
+                    case 5:  return config.beat3Tick5Color();
+                    case 6:  return config.beat3Tick6Color();
+                    case 7:  return config.beat3Tick7Color();
+                    case 8:  return config.beat3Tick8Color();
+                    case 9:  return config.beat3Tick9Color();
+                    default: return Color.WHITE;
+                }
+            default:
+                switch (tick)
+                {
+                    case 1:  return config.beat1Tick1Color();
+                    case 2:  return config.beat1Tick2Color();
+                    case 3:  return config.beat1Tick3Color();
+                    case 4:  return config.beat1Tick4Color();
+                    case 5:  return config.beat1Tick5Color();
+                    case 6:  return config.beat1Tick6Color();
+                    case 7:  return config.beat1Tick7Color();
+                    case 8:  return config.beat1Tick8Color();
+                    case 9:  return config.beat1Tick9Color();
+                    default: return Color.WHITE;
+                }
+        }
+    }
+
+    private static int readOpacity(TickBeatsMetronomeConfig config, int beatNumber, int tick)
+    {
+        switch (beatNumber)
+        {
+            case 2:
+                switch (tick)
+                {
+                    case 1:  return config.beat2Tick1Opacity();
+                    case 2:  return config.beat2Tick2Opacity();
+                    case 3:  return config.beat2Tick3Opacity();
+                    case 4:  return config.beat2Tick4Opacity();
+                    case 5:  return config.beat2Tick5Opacity();
+                    case 6:  return config.beat2Tick6Opacity();
+                    case 7:  return config.beat2Tick7Opacity();
+                    case 8:  return config.beat2Tick8Opacity();
+                    case 9:  return config.beat2Tick9Opacity();
+                    default: return 0;
+                }
+            case 3:
+                switch (tick)
+                {
+                    case 1:  return config.beat3Tick1Opacity();
+                    case 2:  return config.beat3Tick2Opacity();
+                    case 3:  return config.beat3Tick3Opacity();
+                    case 4:  return config.beat3Tick4Opacity();
+                    case 5:  return config.beat3Tick5Opacity();
+                    case 6:  return config.beat3Tick6Opacity();
+                    case 7:  return config.beat3Tick7Opacity();
+                    case 8:  return config.beat3Tick8Opacity();
+                    case 9:  return config.beat3Tick9Opacity();
+                    default: return 0;
+                }
+            default:
+                switch (tick)
+                {
+                    case 1:  return config.beat1Tick1Opacity();
+                    case 2:  return config.beat1Tick2Opacity();
+                    case 3:  return config.beat1Tick3Opacity();
+                    case 4:  return config.beat1Tick4Opacity();
+                    case 5:  return config.beat1Tick5Opacity();
+                    case 6:  return config.beat1Tick6Opacity();
+                    case 7:  return config.beat1Tick7Opacity();
+                    case 8:  return config.beat1Tick8Opacity();
+                    case 9:  return config.beat1Tick9Opacity();
+                    default: return 0;
+                }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.TickBeatsMetronome;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * TickPatternManager holds the current {@link TickPattern}.
+ *
+ * The plugin calls {@link #refresh()} on startup and on every config change, which compiles a new pattern
+ * and swaps it in with one volatile write, so ticks and overlays always see a whole pattern, old or new, never half of each.
+ */
+@Singleton
+public class TickPatternManager
+{
+    @Inject
+    private TickBeatsMetronomeConfig config;
+
+    private volatile TickPattern pattern;
+
+    /**
+     * Compiles the beat/tick grid from the config and makes it the current pattern.
+     */
+    public void refresh()
+    {
+        pattern = TickPattern.compile(config);
+    }
+
+    /**
+     * @return The current pattern, compiled on first use if refresh() hasn't been called yet
+     */
+    public TickPattern getPattern()
+    {
+        TickPattern current = pattern;
+        if (current == null)
+        {
+            current = TickPattern.compile(config);
+            pattern = current;
+        }
+        return current;
+    }
+}
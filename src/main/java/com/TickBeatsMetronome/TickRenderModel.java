@@ -0,0 +1,219 @@
+package com.TickBeatsMetronome;
+
+import java.awt.*;
+
+/**
+ * TickRenderModel is everything the overlays draw for the current tick, worked out once when the tick
+ * (or a hotkey or setting) changes instead of every frame.
+ *
+ * The overlays render at the client's frame rate while ticks happen on the tick thread, so instead of every overlay
+ * reading the plugin's tick fields, the pattern and the config every frame, the plugin builds a new model and publishes
+ * it with one volatile write (see {@link TickBeatsMetronomePlugin#getRenderModel()}). A model never changes once built,
+ * so an overlay always draws one whole tick, never the tick count of one tick and the color of another.
+ */
+public final class TickRenderModel
+{
+    private final int beatNumber;
+    private final int tickCount;
+
+    // Overhead number
+    private final boolean showOverheadNumber;
+    private final String tickText;
+    private final Color textColor;
+    private final Font font;
+    private final int textVerticalOffset;
+
+    // Color overlay, the tick color with its opacity already applied, and the same color at every step of the fade
+    private final boolean showColorOverlay;
+    private final Color overlayColor;
+    private final boolean fadeColorOverlay;
+    private final Color[] overlayFade;
+
+    // When the tick being shown happened and how long ticks are, for fading the color overlay
+    private final long tickNanos;
+    private final long tickPeriodNanos;
+
+    // Info box
+    private final boolean showInfoBox;
+    private final String modeLabel;
+    private final String songName;
+    private final String beatLabel;
+    private final String tickLabel;
+    private final boolean showTickTimingStats;
+    private final boolean useHighQualityMusic;
+
+    private TickRenderModel(int beatNumber, int tickCount, int maxTicks, long tickNanos, long tickPeriodNanos, TickPattern pattern,
+                            TickBeatsMetronomeConfig config, String songName, TickRenderModel previous)
+    {
+        this.beatNumber = beatNumber;
+        this.tickCount = tickCount;
+        this.tickNanos = tickNanos;
+        this.tickPeriodNanos = Math.max(1, tickPeriodNanos);
+
+        showOverheadNumber = config.enableTextMetronome();
+        tickText = String.valueOf(tickCount);
+        textColor = pattern.getColor(beatNumber, tickCount);
+        textVerticalOffset = config.textVerticalOffset();
+
+        // Fonts are only made again when the size setting changes
+        int fontSize = config.fontSize();
+        font = previous != null && previous.font.getSize() == fontSize ? previous.font : new Font("Arial", Font.BOLD, fontSize);
+
+        showColorOverlay = config.enableColorOverlay();
+        overlayColor = pattern.getOverlayColor(beatNumber, tickCount);
+        fadeColorOverlay = config.fadeColorOverlay();
+        overlayFade = pattern.getOverlayFade(beatNumber, tickCount);
+
+        showInfoBox = config.showInfoBox();
+        modeLabel = formatMode(config.playbackMode());
+        this.songName = songName;
+        beatLabel = beatNumber + " / " + pattern.getEnabledBeats();
+        tickLabel = tickCount + " / " + maxTicks;
+        showTickTimingStats = config.showTickTimingStats();
+        useHighQualityMusic = config.useHighQualityMusic();
+    }
+
+    /**
+     * Builds the model for a tick.
+     *
+     * @param beatNumber      Which beat is playing
+     * @param tickCount       Which tick of the beat it is (0 before the first tick)
+     * @param maxTicks        How many ticks the beat has, for the info box
+     * @param tickNanos       The System.nanoTime() the tick happened at, for fading the color overlay
+     * @param tickPeriodNanos How long a tick is, the color overlay fades out over this long
+     * @param pattern         The current beat/tick grid
+     * @param config          The plugin config, for which overlays are on and how they look
+     * @param songName        The song playing, or null for none
+     * @param previous        The last published model so unchanged values like the font can be reused, or null
+     */
+    public static TickRenderModel build(int beatNumber, int tickCount, int maxTicks, long tickNanos, long tickPeriodNanos, TickPattern pattern,
+                                        TickBeatsMetronomeConfig config, String songName, TickRenderModel previous)
+    {
+        return new TickRenderModel(beatNumber, tickCount, maxTicks, tickNanos, tickPeriodNanos, pattern, config, songName, previous);
+    }
+
+    public int getBeatNumber()
+    {
+        return beatNumber;
+    }
+
+    public int getTickCount()
+    {
+        return tickCount;
+    }
+
+    public boolean isShowOverheadNumber()
+    {
+        return showOverheadNumber;
+    }
+
+    /**
+     * @return The tick count as text for the overhead number
+     */
+    public String getTickText()
+    {
+        return tickText;
+    }
+
+    public Color getTextColor()
+    {
+        return textColor;
+    }
+
+    public Font getFont()
+    {
+        return font;
+    }
+
+    public int getTextVerticalOffset()
+    {
+        return textVerticalOffset;
+    }
+
+    public boolean isShowColorOverlay()
+    {
+        return showColorOverlay;
+    }
+
+    /**
+     * Picks the color to fill the screen with out of the precomputed fade, so it's the same cost every frame.
+     *
+     * @param nowNanos The System.nanoTime() of the frame being drawn
+     * @return The tick color with its opacity applied, faded by how far through the tick it is if fading is on
+     */
+    public Color getOverlayColor(long nowNanos)
+    {
+        if (!fadeColorOverlay)
+        {
+            return overlayColor;
+        }
+
+        long elapsedNanos = nowNanos - tickNanos;
+        if (elapsedNanos <= 0)
+        {
+            return overlayFade[0];
+        }
+        if (elapsedNanos >= tickPeriodNanos)
+        {
+            return overlayFade[TickPattern.FADE_STEPS];
+        }
+
+        return overlayFade[(int) (elapsedNanos * TickPattern.FADE_STEPS / tickPeriodNanos)];
+    }
+
+    public boolean isShowInfoBox()
+    {
+        return showInfoBox;
+    }
+
+    /**
+     * @return The playback mode for the info box, e.g. "Manual"
+     */
+    public String getModeLabel()
+    {
+        return modeLabel;
+    }
+
+    /**
+     * @return The song playing, or null for none
+     */
+    public String getSongName()
+    {
+        return songName;
+    }
+
+    /**
+     * @return The beat out of the enabled beats for the info box, e.g. "2 / 3"
+     */
+    public String getBeatLabel()
+    {
+        return beatLabel;
+    }
+
+    /**
+     * @return The tick out of the beat's ticks for the info box, e.g. "4 / 8"
+     */
+    public String getTickLabel()
+    {
+        return tickLabel;
+    }
+
+    public boolean isShowTickTimingStats()
+    {
+        return showTickTimingStats;
+    }
+
+    public boolean isUseHighQualityMusic()
+    {
+        return useHighQualityMusic;
+    }
+
+    /**
+     * Makes a playback mode readable, lowercase with spaces instead of underscores and the first letter capitalized
+     */
+    private static String formatMode(TickBeatsMetronomeConfig.PlaybackMode playbackMode)
+    {
+        String mode = playbackMode.toString().toLowerCase().replace('_', ' ');
+        return mode.substring(0, 1).toUpperCase() + mode.substring(1);
+    }
+}
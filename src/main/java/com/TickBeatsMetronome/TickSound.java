@@ -1,20 +1,30 @@
 package com.TickBeatsMetronome;
 
 import javax.sound.sampled.AudioFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * TickSound
  *
  * Represents a single cached tick sound in memory.
- * Stores both:
- * - The AudioFormat (sample rate, channels, encoding, etc.)
+ * Stores:
+ * - The AudioFormat (always AudioEngine.FORMAT, sounds are converted when they're cached)
  * - The raw PCM audio data (decoded bytes)
+ * - Copies of the audio pre-scaled to each volume the beat settings use
  */
 public class TickSound
 {
+    // Highest volume the config allows (boosted)
+    public static final int MAX_VOLUME = 150;
+
     private final AudioFormat format;
     private final byte[] data;
 
+    // Pre-scaled copies of data indexed by volume (0–150), null for volumes that aren't used
+    private final byte[][] volumeData = new byte[MAX_VOLUME + 1][];
+
     public TickSound(AudioFormat format, byte[] data)
     {
         this.format = format;
@@ -36,4 +46,70 @@ public class TickSound
     {
         return data;
     }
-}
\ No newline at end of file
+
+    /**
+     * Get the audio scaled to a volume, building it the first time it's asked for.
+     * Volumes used by the beat settings are built ahead of time by TickSoundCache, so normally this is just an array read.
+     *
+     * @param volume Volume percentage (0–150), over 100 is boosted
+     * @return the scaled data
+     */
+    public synchronized byte[] getVolumeData(int volume)
+    {
+        volume = Math.max(0, Math.min(MAX_VOLUME, volume));
+
+        if (volumeData[volume] == null)
+        {
+            volumeData[volume] = scale(data, volume);
+        }
+        return volumeData[volume];
+    }
+
+    /**
+     * Drop every pre-scaled copy, used when the volumes in the beat settings change.
+     */
+    public synchronized void clearVolumeData()
+    {
+        Arrays.fill(volumeData, null);
+    }
+
+    /**
+     * @return every pre-scaled copy that has been built
+     */
+    public synchronized List<byte[]> getBuiltVolumeData()
+    {
+        List<byte[]> built = new ArrayList<>();
+        for (byte[] data : volumeData)
+        {
+            if (data != null)
+            {
+                built.add(data);
+            }
+        }
+        return built;
+    }
+
+    /**
+     * Scales 16-bit little-endian PCM by a volume percentage, clamping boosted samples instead of letting them wrap.
+     */
+    private static byte[] scale(byte[] pcm, int volume)
+    {
+        // 100% is just the cached audio
+        if (volume == 100)
+        {
+            return pcm;
+        }
+
+        byte[] scaled = new byte[pcm.length];
+        for (int i = 0; i + 1 < pcm.length; i += 2)
+        {
+            int sample = (short) ((pcm[i + 1] << 8) | (pcm[i] & 0xff));
+            sample = sample * volume / 100;
+            sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+
+            scaled[i] = (byte) sample;
+            scaled[i + 1] = (byte) (sample >> 8);
+        }
+        return scaled;
+    }
+}
@@ -8,8 +8,11 @@ import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import java.io.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * TickSoundCache stores all tick sound files in memory to avoid repeatedly reading them from disk.
@@ -17,6 +20,12 @@ import java.util.Map;
  * Since tick sounds are small and played frequently, it is much more efficient to load them once
  * into a map (keyed by resource name) during startup or configuration changes. This allows for
  * fast retrieval and playback with minimal I/O overhead.
+ *
+ * Every sound is converted to the AudioEngine format (the format of the open output line) as it's cached,
+ * whatever bit depth, encoding, channel count or sample rate the WAV was, so playback never has to check or convert it.
+ *
+ * On top of that, every (sound, volume) pair the beat settings actually use gets a pre-scaled copy
+ * built once when the config changes, so playback never has to adjust a gain control.
  */
 
 @Slf4j
@@ -29,9 +38,21 @@ public class TickSoundCache
     // Map of cached tick sounds: TickSound (format + data).
     private final Map<String, TickSound> cachedSounds = new HashMap<>();
 
+    // Why a sound couldn't be cached, keyed the same as cachedSounds, so the error can be shown when it's played
+    private final Map<String, String> loadErrors = new HashMap<>();
+
+    // Every volume each sound is used at in the beat settings, keyed by resource name
+    private Map<String, Set<Integer>> configuredVolumes = new HashMap<>();
+
     @Inject
     private UserSoundManager userSoundManager;
 
+    @Inject
+    private TickBeatsMetronomeConfig config;
+
+    @Inject
+    private TickSoundClipPool tickSoundClipPool;
+
     /**
      * Preload and cache all sounds.
      * This should be called once on plugin startup.
@@ -54,6 +75,8 @@ public class TickSoundCache
             }
             cacheBuiltInSound(option.getResourceName());
         }
+
+        buildVolumeData();
     }
 
     /**
@@ -65,6 +88,7 @@ public class TickSoundCache
         // Clear old user sounds (Any key that's a stringified int which indicates a user sound)
         // in case the user removed one or the order has changed
         cachedSounds.keySet().removeIf(key -> key.matches("\\d+"));
+        loadErrors.keySet().removeIf(key -> key.matches("\\d+"));
 
         //make sure user sound files are up to date with any changes the user may have made
         userSoundManager.loadUserSounds();
@@ -75,6 +99,68 @@ public class TickSoundCache
         {
             cacheUserSound(userSound.getKey(), userSound.getValue());
         }
+
+        buildVolumeData();
+    }
+
+    /**
+     * Set which volumes each sound is played at by the beat settings and build the pre-scaled copies for them.
+     *
+     * @param configuredVolumes Volumes (0–150) keyed by resource name (e.g. "snare.wav" or "1")
+     */
+    public void setConfiguredVolumes(Map<String, Set<Integer>> configuredVolumes)
+    {
+        this.configuredVolumes = configuredVolumes;
+        buildVolumeData();
+    }
+
+    /**
+     * Throw away the old pre-scaled copies and build one for every configured (sound, volume) pair,
+     * then reopen the pooled Clips so they hold the new copies.
+     */
+    private void buildVolumeData()
+    {
+        for (TickSound sound : cachedSounds.values())
+        {
+            sound.clearVolumeData();
+        }
+
+        for (Map.Entry<String, Set<Integer>> entry : configuredVolumes.entrySet())
+        {
+            TickSound sound = cachedSounds.get(entry.getKey());
+            if (sound == null)
+            {
+                continue;
+            }
+
+            for (int volume : entry.getValue())
+            {
+                sound.getVolumeData(volume);
+            }
+        }
+
+        rebuildClipPool();
+    }
+
+    /**
+     * Reopen the pooled Clips for every cached sound if the Clip Pool backend is selected,
+     * otherwise close them so they aren't holding lines open for nothing.
+     */
+    public void rebuildClipPool()
+    {
+        if (config.audioBackend() == TickBeatsMetronomeConfig.AudioBackend.CLIP_POOL)
+        {
+            List<byte[]> volumeData = new ArrayList<>();
+            for (TickSound sound : cachedSounds.values())
+            {
+                volumeData.addAll(sound.getBuiltVolumeData());
+            }
+            tickSoundClipPool.rebuild(volumeData);
+        }
+        else
+        {
+            tickSoundClipPool.close();
+        }
     }
 
     /**
@@ -126,8 +212,8 @@ public class TickSoundCache
     }
 
     /**
-     * Decode and store a sound from an AudioInputStream.
-     * Truncates files larger than 1 MB and shows an overlay warning.
+     * Decode, convert to the AudioEngine format and store a sound from an AudioInputStream.
+     * Sounds of 1 MB or more, or in a format that can't be converted, aren't cached and their error is kept for getLoadError().
      *
      * @param soundKey         Key used for lookup (e.g., "tick-hihat.wav" or "1")
      * @param audioInputStream The decoded audio stream from a WAV file or resource
@@ -136,16 +222,48 @@ public class TickSoundCache
     {
         AudioFormat audioFormat = audioInputStream.getFormat();
 
-        // Read up to MAX_FILE_SIZE_BYTES of audio data (will truncate if larger)
+        // Read up to MAX_FILE_SIZE_BYTES of audio data, if it fills that the file is too large
         byte[] rawAudioData = audioInputStream.readNBytes(MAX_FILE_SIZE_BYTES);
+        if (rawAudioData.length >= MAX_FILE_SIZE_BYTES)
+        {
+            loadErrors.put(soundKey, describeSound(soundKey) + " is too large (must be under 1MB)");
+            log.debug("Sound {} is too large to cache", soundKey);
+            return;
+        }
+
+        // Convert to the one format the output line uses (handles 8/16/24/32-bit, float, mono/stereo and any sample rate)
+        byte[] pcmData = AudioEngine.convert(audioFormat, rawAudioData);
+        if (pcmData == null)
+        {
+            loadErrors.put(soundKey, describeSound(soundKey) + " is in an unsupported format (" + audioFormat.getEncoding() + ")");
+            log.debug("Sound {} couldn't be converted from {}", soundKey, audioFormat);
+            return;
+        }
 
-        // Store the decoded PCM data and format in the cache
-        TickSound tickSound = new TickSound(audioFormat, rawAudioData);
+        // Store the converted PCM data and format in the cache
+        TickSound tickSound = new TickSound(AudioEngine.FORMAT, pcmData);
 
         //add the key and tickSound data to the cache map
         cachedSounds.put(soundKey, tickSound);
+        loadErrors.remove(soundKey);
+
+        log.debug("Cached sound {} ({} bytes, converted from {} Hz {}-bit)", soundKey, pcmData.length,
+                audioFormat.getSampleRate(), audioFormat.getSampleSizeInBits());
+    }
 
-        log.debug("Cached sound {} ({} bytes, {} Hz)", soundKey, rawAudioData.length, audioFormat.getSampleRate());
+    /**
+     * Names a sound for an error message, user sounds by their number and built-in sounds by their file name.
+     *
+     * @param soundKey Key used for lookup (e.g., "tick-hihat.wav" or "1")
+     */
+    private static String describeSound(String soundKey)
+    {
+        // User sound keys are digits only, like "1", "2", etc.
+        if (soundKey.matches("\\d+"))
+        {
+            return "User Sound " + soundKey;
+        }
+        return "Built-in sound " + soundKey;
     }
 
     /**
@@ -159,12 +277,24 @@ public class TickSoundCache
         return cachedSounds.get(key);
     }
 
+    /**
+     * Get the reason a sound couldn't be cached.
+     *
+     * @param key File name or user sound number
+     * @return An error message to show the user, or null if the sound didn't fail to cache
+     */
+    public String getLoadError(String key)
+    {
+        return loadErrors.get(key);
+    }
+
     /**
      * Clear ALL cached sounds (both built-in + user).
      */
     public void clearAll()
     {
         cachedSounds.clear();
+        loadErrors.clear();
         log.debug("Cleared all cached tick sounds");
     }
 
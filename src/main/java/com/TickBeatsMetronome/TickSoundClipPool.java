@@ -0,0 +1,180 @@
+package com.TickBeatsMetronome;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Clip;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TickSoundClipPool keeps a few already opened Clips for every pre-scaled tick sound in TickSoundCache.
+ *
+ * Instead of opening a new Clip on every tick, a pooled Clip is rewound and restarted,
+ * so the only cost left when a tick fires is starting the line.
+ * Each sound gets more than one Clip so a long sound can still be ringing out when it's played again.
+ * The Clips hold audio that's already scaled to its volume, so no gain control is touched while playing.
+ */
+@Slf4j
+@Singleton
+public class TickSoundClipPool
+{
+    // How many Clips are kept open for each sound
+    private static final int CLIPS_PER_SOUND = 3;
+
+    @Inject
+    private AudioThread audioThread;
+
+    // Keyed by the exact pre-scaled array from TickSound so looking up a pool doesn't build a key on every tick.
+    // Swapped out as a whole on rebuild so playback never sees a half built pool
+    private volatile Map<byte[], Pool> pools = Collections.emptyMap();
+
+    /**
+     * Closes the current pool and opens a fresh set of Clips for every given sound.
+     *
+     * @param sounds Pre-scaled PCM data in {@link AudioEngine#FORMAT}, one entry per (sound, volume) pair
+     */
+    public synchronized void rebuild(List<byte[]> sounds)
+    {
+        Map<byte[], Pool> newPools = new IdentityHashMap<>();
+
+        for (byte[] data : sounds)
+        {
+            Pool pool = openPool(data);
+            if (pool != null)
+            {
+                newPools.put(data, pool);
+            }
+        }
+
+        Map<byte[], Pool> oldPools = pools;
+        pools = newPools;
+        closeOnAudioThread(oldPools);
+
+        log.debug("Rebuilt tick sound clip pool for {} sounds", newPools.size());
+    }
+
+    /**
+     * Closes every pooled Clip.
+     * Call this in the plugin's shutDown() or when the pool is no longer the active backend.
+     */
+    public synchronized void close()
+    {
+        Map<byte[], Pool> oldPools = pools;
+        pools = Collections.emptyMap();
+        closeOnAudioThread(oldPools);
+    }
+
+    /**
+     * Rewinds and restarts the next pooled Clip for a sound.
+     *
+     * @param data The pre-scaled data from {@link TickSound#getVolumeData(int)}
+     * @return false if the sound isn't in the pool
+     */
+    public boolean play(byte[] data)
+    {
+        Pool pool = pools.get(data);
+        if (pool == null)
+        {
+            return false;
+        }
+
+        Clip clip = pool.next();
+
+        // Stop it in case it's still ringing out from the last time it was used, then rewind it
+        clip.stop();
+        clip.setFramePosition(0);
+        clip.start();
+        return true;
+    }
+
+    /**
+     * Opens CLIPS_PER_SOUND Clips loaded with a sound's data.
+     *
+     * @return the pool, or null if the Clips couldn't be opened
+     */
+    private Pool openPool(byte[] data)
+    {
+        Clip[] clips = new Clip[CLIPS_PER_SOUND];
+
+        try
+        {
+            for (int i = 0; i < clips.length; i++)
+            {
+                clips[i] = AudioSystem.getClip();
+                clips[i].open(AudioEngine.FORMAT, data, 0, data.length);
+            }
+            return new Pool(clips);
+        }
+        catch (Exception e)
+        {
+            log.debug("Failed to open pooled clips: {}", e.getMessage());
+
+            // Don't leak whatever did get opened
+            for (Clip clip : clips)
+            {
+                if (clip != null)
+                {
+                    clip.close();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Closes pools that were just swapped out. play() only runs on the audio thread, so closing them there
+     * waits for a play that already picked up one of their Clips, instead of closing it between pool.next() and start().
+     * Every play after that sees the new pools.
+     */
+    private void closeOnAudioThread(Map<byte[], Pool> oldPools)
+    {
+        if (oldPools.isEmpty())
+        {
+            return;
+        }
+
+        // When the audio thread isn't running (e.g. shutting down) this closes them straight away.
+        // If its queue is somehow full, close them here rather than leak them
+        if (!audioThread.submit((data, head, tail, volume, timeNanos, name) -> closePools(oldPools), null, null, null, 0, 0, null))
+        {
+            closePools(oldPools);
+        }
+    }
+
+    private void closePools(Map<byte[], Pool> oldPools)
+    {
+        for (Pool pool : oldPools.values())
+        {
+            for (Clip clip : pool.clips)
+            {
+                clip.close();
+            }
+        }
+    }
+
+    /**
+     * The Clips for a single sound, handed out round-robin.
+     */
+    private static class Pool
+    {
+        private final Clip[] clips;
+        private int nextIndex = 0;
+
+        private Pool(Clip[] clips)
+        {
+            this.clips = clips;
+        }
+
+        private synchronized Clip next()
+        {
+            Clip clip = clips[nextIndex];
+            nextIndex = (nextIndex + 1) % clips.length;
+            return clip;
+        }
+    }
+}
@@ -8,6 +8,11 @@ import javax.inject.Singleton;
 import javax.sound.sampled.*;
 import java.io.File;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 
 /**
@@ -29,116 +34,135 @@ public class TickSoundManager {
     @Inject
     private TickSoundCache tickSoundCache;
 
+    @Inject
+    private AudioEngine audioEngine;
+
+    @Inject
+    private TickSoundClipPool tickSoundClipPool;
+
+    @Inject
+    private AudioThread audioThread;
+
+    @Inject
+    private TickTraceRecorder tickTraceRecorder;
+
+    @Inject
+    private TickPatternManager tickPatternManager;
+
+    // Plays tick sounds on the audio thread, kept in a field so submitting a sound doesn't create a new one every tick
+    private final AudioThread.Player tickSoundPlayer = this::playVolumeData;
+
+    // Clips opened for single ticks that are still playing, oldest first, so they can be capped at the max polyphony
+    private final ConcurrentLinkedDeque<Clip> openClips = new ConcurrentLinkedDeque<>();
 
     /**
      * Determines which tick to play on which beat
+     * @param tickNanos The System.nanoTime() the tick was meant to happen at
      */
-    public void playSound(int beatNumber, int tickCount)
+    public void playSound(int beatNumber, int tickCount, long tickNanos)
     {
-        switch (beatNumber)
+        TickPattern pattern = tickPatternManager.getPattern();
+        TickSoundOption soundOption = pattern.getSound(beatNumber, tickCount);
+
+        if (soundOption != TickSoundOption.OFF)
         {
-            case 1: playBeat1(tickCount); break;
-            case 2: playBeat2(tickCount); break;
-            case 3: playBeat3(tickCount); break;
-            default: playBeat1(tickCount); break;
+            play(soundOption.getResourceName(), pattern.getVolume(beatNumber, tickCount), tickNanos);
         }
     }
 
     /**
-     * Plays the configured sound for the given tick (1–9) using the DEFAULT set (Beat 1).
+     * Queues the sound for an upcoming tick in the audio engine, to be heard exactly at the tick's predicted time.
+     * Only for the Software Mixer, check {@link AudioEngine#isClockReady()} first.
+     * Queueing only hands the sound to a voice, so it's done straight away instead of on the audio thread,
+     * that way a {@link #retractQueuedSound} right after can never run before it.
+     *
+     * @param tickNanos    The System.nanoTime() the tick is predicted to happen at
+     * @param tickSequence The tick's sequence number, for retracting the sound if the tick changes
+     * @return false if the sound couldn't be queued and should be played on the tick as usual
      */
-    private void playBeat1(int tickCount)
+    public boolean queueSound(int beatNumber, int tickCount, long tickNanos, long tickSequence)
     {
-        TickSoundOption soundOption;
-        int volume;
+        TickPattern pattern = tickPatternManager.getPattern();
+        TickSoundOption soundOption = pattern.getSound(beatNumber, tickCount);
 
-        switch (tickCount)
+        // Nothing to play on this tick, so nothing needs playing on it later either
+        if (soundOption == TickSoundOption.OFF)
         {
-            case 1:  soundOption = config.beat1Tick1Sound(); volume = config.beat1Tick1Volume(); break;
-            case 2:  soundOption = config.beat1Tick2Sound(); volume = config.beat1Tick2Volume(); break;
-            case 3:  soundOption = config.beat1Tick3Sound(); volume = config.beat1Tick3Volume(); break;
-            case 4:  soundOption = config.beat1Tick4Sound(); volume = config.beat1Tick4Volume(); break;
-            case 5:  soundOption = config.beat1Tick5Sound(); volume = config.beat1Tick5Volume(); break;
-            case 6:  soundOption = config.beat1Tick6Sound(); volume = config.beat1Tick6Volume(); break;
-            case 7:  soundOption = config.beat1Tick7Sound(); volume = config.beat1Tick7Volume(); break;
-            case 8:  soundOption = config.beat1Tick8Sound(); volume = config.beat1Tick8Volume(); break;
-            case 9:  soundOption = config.beat1Tick9Sound(); volume = config.beat1Tick9Volume(); break;
-            default: soundOption = TickSoundOption.OFF; volume = 100; break;
+            return true;
         }
 
-        if (soundOption != TickSoundOption.OFF)
+        // Leave missing sounds to play() so the error message is shown on the tick
+        TickSound sound = tickSoundCache.getSound(soundOption.getResourceName());
+        if (sound == null)
+        {
+            return false;
+        }
+
+        byte[] volumeData = sound.getVolumeData(pattern.getVolume(beatNumber, tickCount));
+        if (!audioEngine.queueAt(volumeData, 100, tickNanos, tickSequence))
         {
-            play(soundOption.getResourceName(), volume);
+            log.debug("Couldn't queue tick sound {}", soundOption.getResourceName());
+            return false;
         }
+
+        // The audio engine traces it when it starts, it may yet be retracted
+        return true;
     }
 
     /**
-     * Plays the configured sound for the given tick (1–9) using the ALTERNATE set (Beat 2).
+     * Pulls a queued tick sound back out of the audio engine if it hasn't started playing yet.
+     *
+     * @param tickSequence The sequence number the sound was queued with
+     * @return true if a sound was pulled back
      */
-    private void playBeat2(int tickCount)
+    public boolean retractQueuedSound(long tickSequence)
     {
-        TickSoundOption soundOption;
-        int volume;
-
-        switch (tickCount)
-        {
-            case 1:  soundOption = config.beat2Tick1Sound(); volume = config.beat2Tick1Volume(); break;
-            case 2:  soundOption = config.beat2Tick2Sound(); volume = config.beat2Tick2Volume(); break;
-            case 3:  soundOption = config.beat2Tick3Sound(); volume = config.beat2Tick3Volume(); break;
-            case 4:  soundOption = config.beat2Tick4Sound(); volume = config.beat2Tick4Volume(); break;
-            case 5:  soundOption = config.beat2Tick5Sound(); volume = config.beat2Tick5Volume(); break;
-            case 6:  soundOption = config.beat2Tick6Sound(); volume = config.beat2Tick6Volume(); break;
-            case 7:  soundOption = config.beat2Tick7Sound(); volume = config.beat2Tick7Volume(); break;
-            case 8:  soundOption = config.beat2Tick8Sound(); volume = config.beat2Tick8Volume(); break;
-            case 9:  soundOption = config.beat2Tick9Sound(); volume = config.beat2Tick9Volume(); break;
-            default: soundOption = TickSoundOption.OFF; volume = 100; break;
-        }
-
-        if (soundOption != TickSoundOption.OFF)
-        {
-            play(soundOption.getResourceName(), volume);
-        }
+        return audioEngine.retractQueued(tickSequence) > 0;
     }
 
     /**
-     * Plays the configured sound for the given tick (1–9) using the THIRD set (Beat 3).
+     * Tells the TickSoundCache every (sound, volume) pair the beat/tick settings use,
+     * so it can build a pre-scaled copy of each one ahead of time.
+     * Call this on startup and whenever a beat sound or volume setting changes.
      */
-    private void playBeat3(int tickCount)
+    public void refreshConfiguredVolumes()
     {
-        TickSoundOption soundOption;
-        int volume;
+        Map<String, Set<Integer>> configuredVolumes = new HashMap<>();
+        TickPattern pattern = tickPatternManager.getPattern();
 
-        switch (tickCount)
+        for (int beatNumber = 1; beatNumber <= TickPattern.BEATS; beatNumber++)
         {
-            case 1:  soundOption = config.beat3Tick1Sound(); volume = config.beat3Tick1Volume(); break;
-            case 2:  soundOption = config.beat3Tick2Sound(); volume = config.beat3Tick2Volume(); break;
-            case 3:  soundOption = config.beat3Tick3Sound(); volume = config.beat3Tick3Volume(); break;
-            case 4:  soundOption = config.beat3Tick4Sound(); volume = config.beat3Tick4Volume(); break;
-            case 5:  soundOption = config.beat3Tick5Sound(); volume = config.beat3Tick5Volume(); break;
-            case 6:  soundOption = config.beat3Tick6Sound(); volume = config.beat3Tick6Volume(); break;
-            case 7:  soundOption = config.beat3Tick7Sound(); volume = config.beat3Tick7Volume(); break;
-            case 8:  soundOption = config.beat3Tick8Sound(); volume = config.beat3Tick8Volume(); break;
-            case 9:  soundOption = config.beat3Tick9Sound(); volume = config.beat3Tick9Volume(); break;
-            default: soundOption = TickSoundOption.OFF; volume = 100; break;
-        }
+            for (int tickCount = 1; tickCount <= TickPattern.TICKS; tickCount++)
+            {
+                TickSoundOption soundOption = pattern.getSound(beatNumber, tickCount);
+                if (soundOption == TickSoundOption.OFF)
+                {
+                    continue;
+                }
 
-        if (soundOption != TickSoundOption.OFF)
-        {
-            play(soundOption.getResourceName(), volume);
+                configuredVolumes
+                        .computeIfAbsent(soundOption.getResourceName(), key -> new HashSet<>())
+                        .add(pattern.getVolume(beatNumber, tickCount));
+            }
         }
+
+        tickSoundCache.setConfiguredVolumes(configuredVolumes);
     }
 
     /**
      * Plays a sound by its resource name at the specified volume.
      *
-     * Retrieves the TickSound from cache, validates the audio data,
-     * and plays it using Java's Clip system. Also displays helpful
-     * error messages for common issues with user-provided sound files.
+     * Retrieves the TickSound from cache and hands it to the AudioThread, which plays it with the configured backend
+     * (the AudioEngine's output line or a pooled Clip), falling back to opening a new Clip
+     * if that backend can't play it. Sounds are validated and converted when they're cached,
+     * so the only checks here are for sounds that never made it into the cache,
+     * which displays helpful error messages for common issues with user-provided sound files.
      *
      * @param resourceName The resource name or key (e.g., "snare.wav" or "1" for user sounds)
      * @param volume Volume to play at (0–150) Over 100 for boosted volume if you want to emphasize a sound
+     * @param tickNanos The System.nanoTime() the tick was meant to happen at, only used when sample accurate ticks are on
      */
-    public void play(String resourceName, int volume) {
+    public void play(String resourceName, int volume, long tickNanos) {
         // Attempt to retrieve the sound from the cache
         TickSound sound = tickSoundCache.getSound(resourceName);
 
@@ -148,85 +172,93 @@ public class TickSoundManager {
 
         // If the sound wasn't found in the cache
         if (sound == null) {
-
-            // If the name looks like a user sound (digits only, like "1", "2", etc.)
-            if (resourceName.matches("\\d+")) {
-                // Suggest to the user where to place valid user sound files
-                String soundsFolder = Paths.get(
-                        RuneLite.RUNELITE_DIR.getAbsolutePath(),
-                        "tick-beats", "sounds"
-                ).toString();
-
-                overlayMessage.show(
-                        "User Sound " + resourceName + " Not Found. Add 16-bit .wav files to:",
-                        soundsFolder
-                );
-            } else {
-                // Otherwise it's likely a built-in sound and should have been cached
-
-                // Uncomment the overlayMessage below for a visual error for failed built-in sounds,
-                // I ended up commenting it out as I thought it may be annoying to a user, as it doesn't provide very useful info
-                // overlayMessage.show("Something went wrong playing sound: " + resourceName, "Try restarting Tick Beats");
-            }
+            showMissingSoundMessage(resourceName);
 
             // Log the failure for debugging purposes
             log.debug("Sound {} not found in cache", resourceName);
             return;
         }
 
-        // Try to get the full path for the user sound (for displaying in error messages)
-        String soundFilePath = "";
-        File userSoundFile = userSoundManager.getUserSoundMap().get(resourceName);
-        if (userSoundFile != null) {
-            soundFilePath = userSoundFile.getAbsolutePath();
-        }
-
-        // Check for file size exceeding 1MB (limit for user sounds)
-        if (sound.getData().length >= 1024 * 1024) {
-            overlayMessage.show(
-                    "User Sound " + resourceName + " is too large (must be under 1MB)",
-                    soundFilePath
-            );
-            return;
-        }
-
-        // Check that the audio is 16-bit (other formats may cause playback issues)
-        int sampleSize = sound.getFormat().getSampleSizeInBits();
-        if (sampleSize != 16) {
-            overlayMessage.show(
-                    "User Sound " + resourceName + " is " + sampleSize + "-bit. Must be 16-bit.",
-                    soundFilePath
-            );
-            return;
-        }
-
         //////////////////////////////////////////////
         //////////// Try to Play the Sound ///////////
         //////////////////////////////////////////////
 
+        // Get the copy of this sound that's already scaled to the volume, so nothing has to adjust gain while playing
+        byte[] volumeData = sound.getVolumeData(volume);
+
+        // Play it on the audio thread so the tick thread never waits on Java Sound
+        audioThread.submit(tickSoundPlayer, volumeData, null, null, 100, tickNanos, resourceName);
+    }
+
+    /**
+     * Plays an already volume scaled sound with the configured backend, run on the AudioThread.
+     *
+     * Records the sound in the tick trace as {@link TickTraceRecorder#AUDIO_START} at the time it's scheduled to be heard.
+     * The immediate backends can't schedule, so for them that's the time it was handed over.
+     *
+     * @param volumeData The pre-scaled data from {@link TickSound#getVolumeData(int)}
+     * @param tickNanos The System.nanoTime() the tick was meant to happen at, only used when sample accurate ticks are on
+     * @param resourceName The resource name or key, for error messages
+     */
+    private void playVolumeData(byte[] volumeData, byte[] head, byte[] tail, int volume, long tickNanos, String resourceName) {
+        switch (config.audioBackend()) {
+            case SOFTWARE_MIXER:
+                // Hand the sound to the audio engine, this never opens or closes a line
+                if (config.sampleAccurateTicks()) {
+                    // Place the sound on the exact frame for the tick time, so scheduler wakeup jitter isn't heard
+                    if (audioEngine.playAt(volumeData, 100, tickNanos)) {
+                        // Heard a fixed lead after the tick time, not when it was handed over
+                        tickTraceRecorder.record(TickTraceRecorder.AUDIO_START, tickNanos + audioEngine.getScheduleLeadNanos());
+                        return;
+                    }
+                }
+                else if (audioEngine.play(volumeData, 100)) {
+                    tickTraceRecorder.record(TickTraceRecorder.AUDIO_START, System.nanoTime());
+                    return;
+                }
+                break;
+            case CLIP_POOL:
+                // Rewind and restart an already opened Clip
+                if (tickSoundClipPool.play(volumeData)) {
+                    tickTraceRecorder.record(TickTraceRecorder.AUDIO_START, System.nanoTime());
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+
         try {
+            // Every open Clip is another native line, stop the oldest ones so there are never more than the max polyphony
+            while (openClips.size() >= config.maxPolyphony()) {
+                Clip oldestClip = openClips.pollFirst();
+                if (oldestClip != null) {
+                    oldestClip.stop();
+                }
+            }
+
             // Create a Clip instance from the system
             Clip clip = AudioSystem.getClip();
 
-            // Load raw audio data into the clip
-            clip.open(sound.getFormat(), sound.getData(), 0, sound.getData().length);
-
-            // Apply the user-configured volume setting
-            setClipVolume(clip, volume);
+            // Load the volume scaled audio data into the clip
+            clip.open(AudioEngine.FORMAT, volumeData, 0, volumeData.length);
 
             // Ensure the clip is closed automatically after playing
             clip.addLineListener(event -> {
                 if (event.getType() == LineEvent.Type.STOP) {
+                    openClips.remove(clip);
                     clip.close();
                 }
             });
 
             // Begin playback (non-blocking)
+            openClips.addLast(clip);
             clip.start();
+            tickTraceRecorder.record(TickTraceRecorder.AUDIO_START, System.nanoTime());
         }
         catch (Exception e) {
             // Show error overlay if something went wrong during playback
-            overlayMessage.show("Unable to play sound file", soundFilePath);
+            overlayMessage.show("Unable to play sound file", getUserSoundPath(resourceName));
 
             // Log the full exception message for debugging
             log.debug("Failed to play sound {}: {}", resourceName, e.getMessage());
@@ -234,51 +266,49 @@ public class TickSoundManager {
     }
 
     /**
-     * Set the clips volume
-     * @param clip the audio clip to adjust the volume for
-     * @param volume the volume percentage to set the clip at, ex. 100. supports over 100 for boosted audio
+     * Tells the user why a sound isn't in the cache, either the reason it failed to load or where to add user sounds
+     * @param resourceName The resource name or key (e.g., "snare.wav" or "1" for user sounds)
      */
-    private void setClipVolume(Clip clip, float volume)
+    private void showMissingSoundMessage(String resourceName)
     {
-        // Check if the clip supports master gain control (volume)
-        // if not return
-        if (!clip.isControlSupported(FloatControl.Type.MASTER_GAIN))
-        {
+        // If the sound was found but couldn't be cached (too large, unsupported format) show why
+        String loadError = tickSoundCache.getLoadError(resourceName);
+        if (loadError != null) {
+            overlayMessage.show(loadError, getUserSoundPath(resourceName));
             return;
         }
 
-        FloatControl volumeControl = (FloatControl) clip.getControl(FloatControl.Type.MASTER_GAIN);
-
-        double dB;
+        // If the name looks like a user sound (digits only, like "1", "2", etc.)
+        if (resourceName.matches("\\d+")) {
+            // Suggest to the user where to place valid user sound files
+            String soundsFolder = Paths.get(
+                    RuneLite.RUNELITE_DIR.getAbsolutePath(),
+                    "tick-beats", "sounds"
+            ).toString();
 
-        // Avoid log10(0) (log10 shouldn't be 0 or negative) and handle 0 volume
-        if (volume <= 0)
-        {
-            dB = volumeControl.getMinimum();
-        }
-        else
-        {
-            // Convert percentage to a volume ratio (0.0–1.0)
-            float volumePercent = volume / 100f;
+            overlayMessage.show(
+                    "User Sound " + resourceName + " Not Found. Add .wav files to:",
+                    soundsFolder
+            );
+        } else {
+            // Otherwise it's likely a built-in sound and should have been cached
 
-            // Convert to decibels using a log scale
-            dB = Math.log10(volumePercent) * 20.0;
+            // Uncomment the overlayMessage below for a visual error for failed built-in sounds,
+            // I ended up commenting it out as I thought it may be annoying to a user, as it doesn't provide very useful info
+            // overlayMessage.show("Something went wrong playing sound: " + resourceName, "Try restarting Tick Beats");
         }
+    }
 
-        // Clamp volume to the supported dB range
-        float minDb = volumeControl.getMinimum();
-        float maxDb = volumeControl.getMaximum();
-
-        if (dB < minDb)
-        {
-            dB = minDb;
-        }
-        else if (dB > maxDb)
-        {
-            dB = maxDb;
+    /**
+     * Try to get the full path for the user sound (for displaying in error messages)
+     * @return the file path, or an empty string if it isn't a user sound
+     */
+    private String getUserSoundPath(String resourceName)
+    {
+        File userSoundFile = userSoundManager.getUserSoundMap().get(resourceName);
+        if (userSoundFile != null) {
+            return userSoundFile.getAbsolutePath();
         }
-
-        // Apply the decibel volume to the clip
-        volumeControl.setValue((float) dB);
+        return "";
     }
 }
@@ -0,0 +1,228 @@
+package com.TickBeatsMetronome;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.RuneLite;
+
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TickTraceRecorder logs every game tick arrival, local tick fire and tick sound start to a binary trace file
+ * in .runelite/tick-beats/traces, so a session with a bad connection can be replayed later with {@link TickTraceReplay}.
+ *
+ * Recording an event just puts 9 bytes into a preallocated buffer. A background thread swaps in a second buffer
+ * every couple of seconds and writes the full one to disk, so the tick threads never touch the file.
+ * If the buffer somehow fills before it's flushed, events are dropped (and counted) rather than waiting.
+ *
+ * File format (big endian): the int {@link #MAGIC}, the int {@link #VERSION}, then records of
+ * one event type byte and the event's System.nanoTime() as a long.
+ */
+@Slf4j
+@Singleton
+public class TickTraceRecorder
+{
+    public static final int MAGIC = 0x54425452; // "TBTR"
+    public static final int VERSION = 1;
+
+    // Event types
+    public static final byte GAME_TICK = 0;
+    public static final byte LOCAL_TICK = 1;
+    // When a tick sound is scheduled to be heard. Sounds that are played straight away (not scheduled on the
+    // sample accurate engine) can't know that, so those record when they were handed to the backend instead.
+    // Queued sounds are recorded by the audio engine once they start being mixed, so retracted ones never show up
+    public static final byte AUDIO_START = 2;
+
+    public static final int RECORD_BYTES = 9;
+
+    private static final File TRACE_DIRECTORY = new File(RuneLite.RUNELITE_DIR, "tick-beats/traces");
+
+    // Room for about 10 minutes of events, far more than is ever waiting between flushes
+    private static final int BUFFER_RECORDS = 4096;
+    private static final long FLUSH_INTERVAL_SECONDS = 2;
+
+    // Events are recorded into the active buffer while the flush thread writes out the other one
+    private ByteBuffer activeBuffer = ByteBuffer.allocate(BUFFER_RECORDS * RECORD_BYTES);
+    private ByteBuffer flushBuffer = ByteBuffer.allocate(BUFFER_RECORDS * RECORD_BYTES);
+    private final Object bufferLock = new Object();
+
+    private ScheduledExecutorService flushExecutor;
+    private FileChannel channel;
+    private File traceFile;
+
+    private volatile boolean recording = false;
+    private long droppedEvents = 0;
+
+    /**
+     * Opens a new trace file and starts recording to it.
+     */
+    public synchronized void start()
+    {
+        // Don't start twice
+        if (recording)
+        {
+            return;
+        }
+
+        traceFile = new File(TRACE_DIRECTORY, "trace-" + new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date()) + ".tbt");
+
+        try
+        {
+            Files.createDirectories(TRACE_DIRECTORY.toPath());
+            channel = FileChannel.open(traceFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            channel.write(header);
+        }
+        catch (IOException e)
+        {
+            log.debug("Failed to open tick trace file {}: {}", traceFile, e.getMessage());
+            closeChannel();
+            return;
+        }
+
+        activeBuffer.clear();
+        flushBuffer.clear();
+        droppedEvents = 0;
+
+        flushExecutor = Executors.newSingleThreadScheduledExecutor();
+        flushExecutor.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        recording = true;
+        log.debug("Recording tick trace to {}", traceFile);
+    }
+
+    /**
+     * Stops recording, writes out anything still buffered and closes the trace file.
+     */
+    public synchronized void stop()
+    {
+        if (!recording)
+        {
+            return;
+        }
+
+        recording = false;
+
+        // Let a flush that's part way through finish, interrupting it would close the file
+        flushExecutor.shutdown();
+        try
+        {
+            flushExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        flushExecutor = null;
+
+        flush();
+        closeChannel();
+
+        if (droppedEvents > 0)
+        {
+            log.debug("Tick trace dropped {} events", droppedEvents);
+        }
+        log.debug("Stopped recording tick trace to {}", traceFile);
+    }
+
+    /**
+     * @return true if events are being recorded
+     */
+    public boolean isRecording()
+    {
+        return recording;
+    }
+
+    /**
+     * @return The file being recorded to (or last recorded to), null if nothing has been recorded
+     */
+    public File getTraceFile()
+    {
+        return traceFile;
+    }
+
+    /**
+     * Adds an event to the trace, does nothing if not recording.
+     *
+     * @param type      {@link #GAME_TICK}, {@link #LOCAL_TICK} or {@link #AUDIO_START}
+     * @param timeNanos The System.nanoTime() the event happened at, for {@link #AUDIO_START} when the sound is heard
+     */
+    public void record(byte type, long timeNanos)
+    {
+        if (!recording)
+        {
+            return;
+        }
+
+        // Only held for the few byte copies, events come from the client, tick, audio and render threads
+        synchronized (bufferLock)
+        {
+            if (activeBuffer.remaining() < RECORD_BYTES)
+            {
+                droppedEvents++;
+                return;
+            }
+
+            activeBuffer.put(type).putLong(timeNanos);
+        }
+    }
+
+    /**
+     * Swaps the buffers and writes out the one that was being recorded to, runs on the flush thread.
+     */
+    private void flush()
+    {
+        ByteBuffer full;
+        synchronized (bufferLock)
+        {
+            full = activeBuffer;
+            activeBuffer = flushBuffer;
+            flushBuffer = full;
+        }
+
+        full.flip();
+
+        try
+        {
+            while (full.hasRemaining())
+            {
+                channel.write(full);
+            }
+        }
+        catch (IOException e)
+        {
+            log.debug("Failed to write tick trace: {}", e.getMessage());
+        }
+
+        full.clear();
+    }
+
+    private void closeChannel()
+    {
+        if (channel == null)
+        {
+            return;
+        }
+
+        try
+        {
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            log.debug("Failed to close tick trace file: {}", e.getMessage());
+        }
+        channel = null;
+    }
+}
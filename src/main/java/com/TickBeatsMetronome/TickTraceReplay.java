@@ -0,0 +1,229 @@
+package com.TickBeatsMetronome;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TickTraceReplay feeds the game tick arrivals from a trace recorded by {@link TickTraceRecorder} back through a
+ * {@link LocalTickManager} on a {@link SimulatedTickClock}, and reports how far the replayed local ticks land from the
+ * game ticks next to how far the recorded ones did. A whole session replays in a fraction of a second,
+ * so smoothing changes can be tried against real bad connection sessions.
+ *
+ * Run it with the plugin and RuneLite on the classpath:
+ * java com.TickBeatsMetronome.TickTraceReplay ~/.runelite/tick-beats/traces/trace-....tbt
+ *
+ * To try a different estimator, pass it to {@link #replay(Trace, TickEstimator)}.
+ */
+public class TickTraceReplay
+{
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 1)
+        {
+            System.out.println("Usage: TickTraceReplay <trace file>");
+            return;
+        }
+
+        Trace trace = Trace.read(new File(args[0]));
+        System.out.println(trace.gameTicks.length + " game ticks, " + trace.localTicks.length + " local ticks, "
+                + trace.audioStarts.length + " tick sounds recorded");
+        System.out.println();
+
+        StringBuilder builder = new StringBuilder();
+        measureDistances(trace.gameTicks, trace.localTicks, newPhaseHistogram("Recorded local vs game tick phase error")).appendTo(builder);
+        builder.append('\n');
+        measureDistances(trace.audioStarts, trace.localTicks, newPhaseHistogram("Recorded tick sound vs local tick")).appendTo(builder);
+        builder.append('\n');
+        replay(trace, new TickEstimator()).appendTo(builder);
+        System.out.println(builder);
+    }
+
+    /**
+     * Replays a trace's game ticks through a local tick manager using the given estimator.
+     *
+     * @return How far each game tick was from the closest replayed local tick
+     */
+    public static TickHistogram replay(Trace trace, TickEstimator tickEstimator)
+    {
+        SimulatedTickClock clock = new SimulatedTickClock();
+
+        // Line the trace up with the simulated clock, which doesn't start at the recording's System.nanoTime()
+        long firstNanos = trace.gameTicks.length > 0 ? trace.gameTicks[0] : 0;
+        long offsetNanos = clock.nanoTime() - firstNanos;
+
+        LongList localTicks = new LongList();
+        LocalTickManager localTickManager = new LocalTickManager(clock, tickEstimator, () -> localTicks.add(clock.nanoTime()), () -> {});
+
+        for (long gameTick : trace.gameTicks)
+        {
+            clock.advanceTo(gameTick + offsetNanos);
+            localTickManager.updateLocalTick();
+        }
+
+        // Let the local tick due right around the last game tick fire too
+        clock.advanceBy(tickEstimator.getPeriodNanos());
+        localTickManager.shutdown();
+
+        long[] replayedGameTicks = new long[trace.gameTicks.length];
+        for (int i = 0; i < replayedGameTicks.length; i++)
+        {
+            replayedGameTicks[i] = trace.gameTicks[i] + offsetNanos;
+        }
+
+        return measureDistances(replayedGameTicks, localTicks.toArray(), newPhaseHistogram("Replayed local vs game tick phase error"));
+    }
+
+    /**
+     * Records how far each event is from the closest reference event, before or after it.
+     * Events before the first reference are skipped. Both arrays must be sorted.
+     */
+    private static TickHistogram measureDistances(long[] events, long[] references, TickHistogram histogram)
+    {
+        if (references.length == 0)
+        {
+            return histogram;
+        }
+
+        int next = 0;
+        for (long event : events)
+        {
+            // Find the first reference at or after the event, the closest one is either it or the one before
+            while (next < references.length && references[next] < event)
+            {
+                next++;
+            }
+
+            // Nothing to compare to before the first reference (e.g. game ticks before local ticks start)
+            if (next == 0)
+            {
+                continue;
+            }
+
+            long distance = event - references[next - 1];
+            if (next < references.length)
+            {
+                distance = Math.min(distance, references[next] - event);
+            }
+            histogram.record(distance);
+        }
+
+        return histogram;
+    }
+
+    private static TickHistogram newPhaseHistogram(String name)
+    {
+        return new TickHistogram(name, 0, TimeUnit.MILLISECONDS.toNanos(300), TimeUnit.MICROSECONDS.toNanos(250));
+    }
+
+    /**
+     * The event times from a trace file, each kind sorted by time.
+     */
+    public static class Trace
+    {
+        public final long[] gameTicks;
+        public final long[] localTicks;
+        // When each tick sound is heard, see TickTraceRecorder.AUDIO_START
+        public final long[] audioStarts;
+
+        public Trace(long[] gameTicks, long[] localTicks, long[] audioStarts)
+        {
+            this.gameTicks = gameTicks;
+            this.localTicks = localTicks;
+            this.audioStarts = audioStarts;
+        }
+
+        /**
+         * Reads a trace file written by {@link TickTraceRecorder}.
+         */
+        public static Trace read(File file) throws IOException
+        {
+            LongList gameTicks = new LongList();
+            LongList localTicks = new LongList();
+            LongList audioStarts = new LongList();
+
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+            {
+                if (input.readInt() != TickTraceRecorder.MAGIC)
+                {
+                    throw new IOException(file + " isn't a tick trace");
+                }
+
+                int version = input.readInt();
+                if (version != TickTraceRecorder.VERSION)
+                {
+                    throw new IOException("Unsupported tick trace version " + version);
+                }
+
+                while (true)
+                {
+                    byte type;
+                    long timeNanos;
+                    try
+                    {
+                        type = input.readByte();
+                        timeNanos = input.readLong();
+                    }
+                    catch (EOFException e)
+                    {
+                        // End of the trace (a trace cut off part way through a record just loses that record)
+                        break;
+                    }
+
+                    switch (type)
+                    {
+                        case TickTraceRecorder.GAME_TICK:
+                            gameTicks.add(timeNanos);
+                            break;
+                        case TickTraceRecorder.LOCAL_TICK:
+                            localTicks.add(timeNanos);
+                            break;
+                        case TickTraceRecorder.AUDIO_START:
+                            audioStarts.add(timeNanos);
+                            break;
+                        default:
+                            throw new IOException("Unknown tick trace event type " + type);
+                    }
+                }
+            }
+
+            // Events from different threads can land in the buffer slightly out of order
+            return new Trace(gameTicks.toSortedArray(), localTicks.toSortedArray(), audioStarts.toSortedArray());
+        }
+    }
+
+    /**
+     * A growable list of longs, so a long trace isn't boxed into millions of Long objects.
+     */
+    private static class LongList
+    {
+        private long[] values = new long[1024];
+        private int size = 0;
+
+        private void add(long value)
+        {
+            if (size == values.length)
+            {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private long[] toArray()
+        {
+            return Arrays.copyOf(values, size);
+        }
+
+        private long[] toSortedArray()
+        {
+            long[] array = toArray();
+            Arrays.sort(array);
+            return array;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.TickBeatsMetronome;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs LocalTickManager on a {@link SimulatedTickClock}, with synthetic GameTick arrivals scheduled on the same clock,
+ * and checks where the local ticks land compared to the real server ticks the arrivals were made from.
+ *
+ * An hour of ticks replays in a fraction of a second, and every random arrival pattern is seeded.
+ */
+public class LocalTickManagerTest
+{
+    private static final double PERIOD_NANOS = TimeUnit.MICROSECONDS.toNanos(600_300);
+    private static final double JITTER_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private SimulatedTickClock clock;
+    private LocalTickManager localTickManager;
+
+    // When every local tick fired
+    private long[] localTicks;
+    private int localTickCount;
+
+    @Before
+    public void setUp()
+    {
+        clock = new SimulatedTickClock();
+        localTicks = new long[8192];
+        localTickCount = 0;
+        localTickManager = new LocalTickManager(clock, this::onLocalTick, () -> { });
+    }
+
+    @Test
+    public void anHourOfJitteryTicksStaysOnTheServerGrid()
+    {
+        Random random = new Random(1);
+        int ticks = 6000;
+        double startNanos = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+
+        for (int tick = 0; tick < ticks; tick++)
+        {
+            scheduleGameTick(TickEstimatorTest.jitteredArrival(startNanos + tick * PERIOD_NANOS, random, JITTER_NANOS));
+        }
+        clock.advanceTo(Math.round(startNanos + ticks * PERIOD_NANOS));
+
+        // One local tick for every game tick after the first (which only starts the loop)
+        assertEquals(ticks, localTickCount, 1);
+
+        TickEstimatorTest.ErrorStats phaseErrors = phaseErrors(startNanos, 20, localTickCount);
+        assertTrue("RMS phase error " + phaseErrors.rms() + "ns", phaseErrors.rms() < TimeUnit.MILLISECONDS.toNanos(3));
+        assertTrue("max phase error " + phaseErrors.max() + "ns", phaseErrors.max() < TimeUnit.MILLISECONDS.toNanos(8));
+
+        // Local ticks are evenly spaced even though the game ticks they follow jitter by ±10ms
+        for (int i = 21; i < localTickCount; i++)
+        {
+            assertEquals("local tick interval " + i, PERIOD_NANOS, localTicks[i] - localTicks[i - 1], TimeUnit.MILLISECONDS.toNanos(3));
+        }
+    }
+
+    @Test
+    public void locksOnWithinTenTicks()
+    {
+        for (int seed = 0; seed < 20; seed++)
+        {
+            setUp();
+            Random random = new Random(seed);
+            double startNanos = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+
+            for (int tick = 0; tick < 100; tick++)
+            {
+                scheduleGameTick(TickEstimatorTest.jitteredArrival(startNanos + tick * PERIOD_NANOS, random, JITTER_NANOS));
+            }
+            clock.advanceTo(Math.round(startNanos + 100 * PERIOD_NANOS));
+
+            TickEstimatorTest.ErrorStats phaseErrors = phaseErrors(startNanos, 10, localTickCount);
+            assertTrue("seed " + seed + " max phase error from tick 10 " + phaseErrors.max() + "ns",
+                    phaseErrors.max() < TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+
+    @Test
+    public void lagSpikeDoesntBunchLocalTicks()
+    {
+        Random random = new Random(2);
+        double startNanos = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+
+        for (int tick = 0; tick < 200; tick++)
+        {
+            long arrivalNanos = TickEstimatorTest.jitteredArrival(startNanos + tick * PERIOD_NANOS, random, TimeUnit.MILLISECONDS.toNanos(5));
+
+            // A lag spike holds up two ticks, which then arrive bunched together with the next one.
+            // (Anything over three ticks is a loading screen rather than lag, and the grid is found again)
+            if (tick >= 100 && tick < 102)
+            {
+                arrivalNanos = Math.round(startNanos + 102 * PERIOD_NANOS) - TimeUnit.MILLISECONDS.toNanos(2) * (102 - tick);
+            }
+
+            scheduleGameTick(arrivalNanos);
+        }
+        clock.advanceTo(Math.round(startNanos + 200 * PERIOD_NANOS));
+
+        for (int i = 30; i < localTickCount; i++)
+        {
+            assertEquals("local tick interval " + i, PERIOD_NANOS, localTicks[i] - localTicks[i - 1], TimeUnit.MILLISECONDS.toNanos(3));
+        }
+
+        TickEstimatorTest.ErrorStats phaseErrors = phaseErrors(startNanos, 20, localTickCount);
+        assertTrue("max phase error " + phaseErrors.max() + "ns", phaseErrors.max() < TimeUnit.MILLISECONDS.toNanos(8));
+    }
+
+    @Test
+    public void worldHopRelocksWithinThreeTicks()
+    {
+        Random random = new Random(3);
+        double startNanos = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+
+        for (int tick = 0; tick < 200; tick++)
+        {
+            scheduleGameTick(TickEstimatorTest.jitteredArrival(startNanos + tick * PERIOD_NANOS, random, JITTER_NANOS));
+        }
+        clock.advanceTo(Math.round(startNanos + 199 * PERIOD_NANOS) + TimeUnit.MILLISECONDS.toNanos(100));
+
+        // Hopping takes a few seconds, then ticks come in on the new world's grid
+        localTickManager.resync();
+        int ticksBeforeHop = localTickCount;
+        double hopStartNanos = startNanos + 205 * PERIOD_NANOS + TimeUnit.MILLISECONDS.toNanos(250);
+
+        for (int tick = 0; tick < 50; tick++)
+        {
+            scheduleGameTick(TickEstimatorTest.jitteredArrival(hopStartNanos + tick * PERIOD_NANOS, random, JITTER_NANOS));
+        }
+        clock.advanceTo(Math.round(hopStartNanos + 50 * PERIOD_NANOS));
+
+        // The first local tick after the hop follows the first game tick on the new world, from the third on they're locked
+        assertTrue("only " + (localTickCount - ticksBeforeHop) + " local ticks after the hop", localTickCount - ticksBeforeHop >= 48);
+        TickEstimatorTest.ErrorStats phaseErrors = phaseErrors(hopStartNanos, ticksBeforeHop + 2, localTickCount);
+        assertTrue("max phase error after the hop " + phaseErrors.max() + "ns", phaseErrors.max() < TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    @Test
+    public void resyncStopsLocalTicksUntilTheNextGameTick()
+    {
+        double startNanos = clock.nanoTime();
+        for (int tick = 0; tick < 10; tick++)
+        {
+            scheduleGameTick(Math.round(startNanos + tick * PERIOD_NANOS));
+        }
+        clock.advanceTo(Math.round(startNanos + 9 * PERIOD_NANOS) + 1);
+
+        localTickManager.resync();
+        assertEquals("tasks left scheduled", 0, clock.getPendingTaskCount());
+
+        // No game ticks (a loading screen), no local ticks
+        int ticksBeforeResync = localTickCount;
+        clock.advanceBy(TimeUnit.SECONDS.toNanos(5));
+        assertEquals(ticksBeforeResync, localTickCount);
+
+        // The next game tick starts them again
+        scheduleGameTick(clock.nanoTime());
+        clock.advanceBy(TimeUnit.SECONDS.toNanos(2));
+        assertTrue("local ticks didn't start again", localTickCount > ticksBeforeResync);
+    }
+
+    private void onLocalTick()
+    {
+        if (localTickCount == localTicks.length)
+        {
+            localTicks = Arrays.copyOf(localTicks, localTicks.length * 2);
+        }
+        localTicks[localTickCount++] = clock.nanoTime();
+    }
+
+    private void scheduleGameTick(long arrivalNanos)
+    {
+        clock.schedule(localTickManager::updateLocalTick, arrivalNanos);
+    }
+
+    /**
+     * @param gridStartNanos When a server tick happened, the grid is every PERIOD_NANOS from there
+     * @return How far the local ticks from..to (exclusive) are from the closest server tick
+     */
+    private TickEstimatorTest.ErrorStats phaseErrors(double gridStartNanos, int from, int to)
+    {
+        TickEstimatorTest.ErrorStats errors = new TickEstimatorTest.ErrorStats();
+        for (int i = from; i < to; i++)
+        {
+            double sinceGridStart = localTicks[i] - gridStartNanos;
+            errors.add(sinceGridStart - Math.round(sinceGridStart / PERIOD_NANOS) * PERIOD_NANOS);
+        }
+        return errors;
+    }
+}
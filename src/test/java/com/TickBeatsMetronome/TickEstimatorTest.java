@@ -0,0 +1,300 @@
+package com.TickBeatsMetronome;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Feeds synthetic GameTick arrival times straight into a TickEstimator and checks how quickly it locks on
+ * and how far off the period and predicted ticks are once it has.
+ *
+ * Every random arrival pattern is seeded so the tests give the same result every run.
+ */
+public class TickEstimatorTest
+{
+    private static final long START_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // A server tick a little off the nominal 600ms, so the estimator has to actually find the period
+    private static final double PERIOD_NANOS = TimeUnit.MICROSECONDS.toNanos(600_300);
+
+    private static final double JITTER_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final long MIN_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(594);
+    private static final long MAX_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(606);
+
+    @Test
+    public void jitterFreeTicksGiveTheExactPeriodFromTheSecondTick()
+    {
+        double periodNanos = TimeUnit.MILLISECONDS.toNanos(603);
+        TickEstimator estimator = new TickEstimator();
+
+        for (int tick = 0; tick < 20; tick++)
+        {
+            estimator.onTick(Math.round(START_NANOS + tick * periodNanos));
+
+            if (tick >= 1)
+            {
+                // Two arrivals are a perfect fit, the first period estimate must not overshoot it
+                assertEquals("period after tick " + (tick + 1), periodNanos, estimator.getPeriodNanos(), 1_000);
+            }
+        }
+
+        long expectedNextNanos = Math.round(START_NANOS + 20 * periodNanos);
+        assertEquals(expectedNextNanos, estimator.predictTickAfter(expectedNextNanos - 1_000_000), 1_000);
+    }
+
+    @Test
+    public void periodRarelyHitsTheClampsWhileLockingOn()
+    {
+        int seeds = 200;
+        int clamped = 0;
+
+        for (int seed = 0; seed < seeds; seed++)
+        {
+            TickEstimator estimator = new TickEstimator();
+            Random random = new Random(seed);
+            boolean hitClamp = false;
+
+            for (int tick = 0; tick < 4; tick++)
+            {
+                estimator.onTick(jitteredArrival(START_NANOS + tick * PERIOD_NANOS, random, JITTER_NANOS));
+
+                // Tick 2 is a two point estimate and can be off by a whole interval's jitter, ticks 3 and 4 are fits
+                long period = estimator.getPeriodNanos();
+                if (tick >= 2 && (period <= MIN_PERIOD_NANOS || period >= MAX_PERIOD_NANOS))
+                {
+                    hitClamp = true;
+                }
+            }
+
+            if (hitClamp)
+            {
+                clamped++;
+            }
+        }
+
+        assertTrue("period hit the clamps on ticks 3-4 in " + clamped + " of " + seeds + " runs", clamped < seeds * 15 / 100);
+    }
+
+    @Test
+    public void locksOnWithinTenTicksWithJitter()
+    {
+        for (int seed = 0; seed < 50; seed++)
+        {
+            TickEstimator estimator = new TickEstimator();
+            Random random = new Random(seed);
+
+            // The first tick from which the period stays within 2ms for the rest of the run
+            int lockedTick = -1;
+
+            for (int tick = 0; tick < 200; tick++)
+            {
+                estimator.onTick(jitteredArrival(START_NANOS + tick * PERIOD_NANOS, random, JITTER_NANOS));
+
+                if (Math.abs(estimator.getPeriodNanos() - PERIOD_NANOS) < TimeUnit.MILLISECONDS.toNanos(2))
+                {
+                    if (lockedTick < 0)
+                    {
+                        lockedTick = tick + 1;
+                    }
+                }
+                else
+                {
+                    lockedTick = -1;
+                }
+            }
+
+            assertTrue("seed " + seed + " never locked on", lockedTick > 0);
+            assertTrue("seed " + seed + " took " + lockedTick + " ticks to lock on", lockedTick <= 10);
+        }
+    }
+
+    @Test
+    public void steadyStateErrorWithJitter()
+    {
+        for (int seed = 0; seed < 20; seed++)
+        {
+            TickEstimator estimator = new TickEstimator();
+            Random random = new Random(seed);
+            ErrorStats phaseErrors = new ErrorStats();
+            long maxPeriodErrorNanos = 0;
+
+            for (int tick = 0; tick < 2000; tick++)
+            {
+                double tickNanos = START_NANOS + tick * PERIOD_NANOS;
+                estimator.onTick(jitteredArrival(tickNanos, random, JITTER_NANOS));
+
+                if (tick >= 500)
+                {
+                    maxPeriodErrorNanos = Math.max(maxPeriodErrorNanos, Math.abs(estimator.getPeriodNanos() - Math.round(PERIOD_NANOS)));
+                    phaseErrors.add(predictNextTick(estimator, tickNanos) - (tickNanos + PERIOD_NANOS));
+                }
+            }
+
+            assertTrue("seed " + seed + " period error " + maxPeriodErrorNanos + "ns", maxPeriodErrorNanos < TimeUnit.MICROSECONDS.toNanos(500));
+            assertTrue("seed " + seed + " RMS phase error " + phaseErrors.rms() + "ns", phaseErrors.rms() < TimeUnit.MILLISECONDS.toNanos(3));
+        }
+    }
+
+    @Test
+    public void followsASlowlyDriftingPeriod()
+    {
+        TickEstimator estimator = new TickEstimator();
+        Random random = new Random(1);
+        ErrorStats phaseErrors = new ErrorStats();
+
+        // An hour of ticks with the tick length drifting from 599.7ms to 600.7ms
+        int ticks = 6000;
+        double startPeriodNanos = TimeUnit.MICROSECONDS.toNanos(599_700);
+        double driftNanos = TimeUnit.MILLISECONDS.toNanos(1);
+        double tickNanos = START_NANOS;
+        double periodNanos = startPeriodNanos;
+
+        for (int tick = 0; tick < ticks; tick++)
+        {
+            estimator.onTick(jitteredArrival(tickNanos, random, TimeUnit.MILLISECONDS.toNanos(5)));
+
+            periodNanos = startPeriodNanos + driftNanos * tick / ticks;
+
+            if (tick >= 100)
+            {
+                assertEquals("period at tick " + tick, periodNanos, estimator.getPeriodNanos(), TimeUnit.MICROSECONDS.toNanos(300));
+                phaseErrors.add(predictNextTick(estimator, tickNanos) - (tickNanos + periodNanos));
+            }
+
+            tickNanos += periodNanos;
+        }
+
+        assertTrue("RMS phase error " + phaseErrors.rms() + "ns", phaseErrors.rms() < TimeUnit.MILLISECONDS.toNanos(2));
+        assertTrue("max phase error " + phaseErrors.max() + "ns", phaseErrors.max() < TimeUnit.MILLISECONDS.toNanos(8));
+    }
+
+    @Test
+    public void lagSpikesDontMoveTheGrid()
+    {
+        TickEstimator estimator = new TickEstimator();
+        Random random = new Random(2);
+        ErrorStats phaseErrors = new ErrorStats();
+
+        for (int tick = 0; tick < 1000; tick++)
+        {
+            double tickNanos = START_NANOS + tick * PERIOD_NANOS;
+            long arrivalNanos = jitteredArrival(tickNanos, random, TimeUnit.MILLISECONDS.toNanos(5));
+
+            // Every so often a tick is held up by a lag spike
+            if (tick > 20 && tick % 37 == 0)
+            {
+                arrivalNanos += TimeUnit.MILLISECONDS.toNanos(250);
+            }
+
+            estimator.onTick(arrivalNanos);
+
+            if (tick >= 50)
+            {
+                assertEquals("period at tick " + tick, PERIOD_NANOS, estimator.getPeriodNanos(), TimeUnit.MICROSECONDS.toNanos(500));
+                phaseErrors.add(predictNextTick(estimator, tickNanos) - (tickNanos + PERIOD_NANOS));
+            }
+        }
+
+        assertTrue("max phase error " + phaseErrors.max() + "ns", phaseErrors.max() < TimeUnit.MILLISECONDS.toNanos(8));
+    }
+
+    @Test
+    public void relocksWhenTheGridReallyMoves()
+    {
+        TickEstimator estimator = new TickEstimator();
+        long shiftNanos = TimeUnit.MILLISECONDS.toNanos(250);
+
+        for (int tick = 0; tick < 300; tick++)
+        {
+            double tickNanos = START_NANOS + tick * PERIOD_NANOS + (tick >= 200 ? shiftNanos : 0);
+            estimator.onTick(Math.round(tickNanos));
+
+            // A few arrivals in a row off the grid are outliers, after that it has to follow them
+            if (tick >= 200 + 6)
+            {
+                assertEquals("predicted tick after tick " + tick, tickNanos + PERIOD_NANOS, predictNextTick(estimator, tickNanos),
+                        TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+
+        assertEquals(PERIOD_NANOS, estimator.getPeriodNanos(), TimeUnit.MICROSECONDS.toNanos(100));
+    }
+
+    @Test
+    public void resetPhaseKeepsThePeriodAndRelocksWithinTwoTicks()
+    {
+        TickEstimator estimator = new TickEstimator();
+        Random random = new Random(3);
+
+        for (int tick = 0; tick < 200; tick++)
+        {
+            estimator.onTick(jitteredArrival(START_NANOS + tick * PERIOD_NANOS, random, JITTER_NANOS));
+        }
+        assertEquals(1.0, estimator.getPeriodConfidence(), 0);
+
+        // A world hop, a few seconds without ticks and then a grid in a different place
+        estimator.resetPhase();
+        double hopStartNanos = START_NANOS + 210 * PERIOD_NANOS + TimeUnit.MILLISECONDS.toNanos(250);
+
+        for (int tick = 0; tick < 50; tick++)
+        {
+            double tickNanos = hopStartNanos + tick * PERIOD_NANOS;
+            estimator.onTick(jitteredArrival(tickNanos, random, JITTER_NANOS));
+
+            assertEquals("period after hop tick " + (tick + 1), PERIOD_NANOS, estimator.getPeriodNanos(), TimeUnit.MICROSECONDS.toNanos(500));
+            if (tick >= 1)
+            {
+                assertEquals("predicted tick after hop tick " + (tick + 1), tickNanos + PERIOD_NANOS, predictNextTick(estimator, tickNanos),
+                        TimeUnit.MILLISECONDS.toNanos(10));
+            }
+        }
+    }
+
+    /**
+     * @return The tick time moved by up to jitterNanos either way
+     */
+    static long jitteredArrival(double tickNanos, Random random, double jitterNanos)
+    {
+        return Math.round(tickNanos + (random.nextDouble() * 2 - 1) * jitterNanos);
+    }
+
+    /**
+     * @return The predicted tick after the one at tickNanos, asking from half a tick on so it can't return that tick
+     */
+    private static long predictNextTick(TickEstimator estimator, double tickNanos)
+    {
+        return estimator.predictTickAfter(Math.round(tickNanos + PERIOD_NANOS / 2));
+    }
+
+    /**
+     * Running RMS and max of a set of errors.
+     */
+    static class ErrorStats
+    {
+        private double sumOfSquares = 0;
+        private double max = 0;
+        private int count = 0;
+
+        void add(double error)
+        {
+            sumOfSquares += error * error;
+            max = Math.max(max, Math.abs(error));
+            count++;
+        }
+
+        double rms()
+        {
+            return count == 0 ? 0 : Math.sqrt(sumOfSquares / count);
+        }
+
+        double max()
+        {
+            return max;
+        }
+    }
+}